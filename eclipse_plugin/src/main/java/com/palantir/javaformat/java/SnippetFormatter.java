@@ -63,6 +63,14 @@ public class SnippetFormatter {
     private static final int INDENTATION_SIZE = 4;
     private final Formatter formatter = Formatter.createFormatter(
             JavaFormatterOptions.builder().style(Style.PALANTIR).build());
+
+    /**
+     * Eclipse does not tell formatters which document the source is from, and creates a formatter for every request.
+     * Compilation units are formatted one editor at a time, usually the same file again after an edit, so they share a
+     * session, which reuses the layouts of the members that did not change.
+     */
+    private static final FormattingSession COMPILATION_UNIT_SESSION = new FormattingSession(
+            Formatter.createFormatter(JavaFormatterOptions.builder().style(Style.PALANTIR).build()));
     private static final CharMatcher NOT_WHITESPACE = CharMatcher.whitespace().negate();
 
     public String createIndentationString(int indentationLevel) {
@@ -104,7 +112,7 @@ public class SnippetFormatter {
             if (kind != SnippetKind.COMPILATION_UNIT) {
                 throw new IllegalArgumentException("comment formatting is only supported for compilation units");
             }
-            return formatter.getFormatReplacements(source, ranges);
+            return COMPILATION_UNIT_SESSION.getFormatReplacements(source, ranges);
         }
         SnippetWrapper wrapper = snippetWrapper(kind, source, initialIndent);
         ranges = offsetRanges(ranges, wrapper.offset);
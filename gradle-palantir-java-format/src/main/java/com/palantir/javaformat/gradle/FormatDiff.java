@@ -23,7 +23,6 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import com.google.common.collect.Streams;
@@ -157,17 +156,17 @@ final class FormatDiff {
 
     /** Converts zero-indexed, [closed, open) line ranges in the given source file to character ranges. */
     private static RangeSet<Integer> lineRangesToCharRanges(String input, RangeSet<Integer> lineRanges) {
-        List<Integer> lines = new ArrayList<>();
-        Iterators.addAll(lines, new LineOffsetIterator(input));
-        lines.add(input.length() + 1);
+        LineIndex lines = LineIndex.of(input);
 
         final RangeSet<Integer> characterRanges = TreeRangeSet.create();
         for (Range<Integer> lineRange :
-                lineRanges.subRangeSet(Range.closedOpen(0, lines.size() - 1)).asRanges()) {
-            int lineStart = lines.get(lineRange.lowerEndpoint());
+                lineRanges.subRangeSet(Range.closedOpen(0, lines.lineCount())).asRanges()) {
+            int lineStart = lines.lineStart(lineRange.lowerEndpoint());
             // Exclude the trailing newline. This isn't strictly necessary, but handling blank lines
             // as empty ranges is convenient.
-            int lineEnd = lines.get(lineRange.upperEndpoint()) - 1;
+            int lineEnd = lineRange.upperEndpoint() < lines.lineCount()
+                    ? lines.lineStart(lineRange.upperEndpoint()) - 1
+                    : input.length();
             Range<Integer> range = Range.closedOpen(lineStart, lineEnd);
             characterRanges.add(range);
         }
@@ -0,0 +1,58 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.gradle;
+
+import java.util.Arrays;
+
+/** The start offsets of the lines of a text, found in one scan of it. */
+final class LineIndex {
+    private final int[] starts;
+
+    private LineIndex(int[] starts) {
+        this.starts = starts;
+    }
+
+    static LineIndex of(String text) {
+        int length = text.length();
+        int[] starts = new int[16];
+        int count = 1;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c > '\r' || (c != '\n' && c != '\r')) {
+                continue;
+            }
+            if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                i++;
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+            }
+            starts[count++] = i + 1;
+        }
+        return new LineIndex(Arrays.copyOf(starts, count));
+    }
+
+    /** Returns the number of lines, which is one more than the number of line breaks. */
+    int lineCount() {
+        return starts.length;
+    }
+
+    /** Returns the offset of the first character of the 0-based {@code line}. */
+    int lineStart(int line) {
+        return starts[line];
+    }
+}
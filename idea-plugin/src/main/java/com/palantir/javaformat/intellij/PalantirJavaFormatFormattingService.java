@@ -18,6 +18,8 @@ package com.palantir.javaformat.intellij;
 
 import static java.util.Comparator.comparing;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Range;
 import com.intellij.formatting.service.AsyncDocumentFormattingService;
@@ -26,6 +28,7 @@ import com.intellij.ide.highlighter.JavaFileType;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.NlsSafe;
 import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.palantir.javaformat.java.FormatterException;
 import com.palantir.javaformat.java.FormatterService;
@@ -35,17 +38,35 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.jetbrains.annotations.NotNull;
 
 class PalantirJavaFormatFormattingService extends AsyncDocumentFormattingService {
+    /** The files that are edited at any time are few, and a session holds the layouts of one format of its file. */
+    private static final int MAX_SESSIONS = 8;
+
     private final FormatterProvider formatterProvider = new FormatterProvider();
 
+    /** A session per file, so that formatting a file again after an edit reuses what the edit did not change. */
+    private final Cache<VirtualFile, DocumentSession> sessions =
+            Caffeine.newBuilder().weakKeys().maximumSize(MAX_SESSIONS).build();
+
     @Override
     protected FormattingTask createFormattingTask(@NotNull AsyncFormattingRequest request) {
         Project project = request.getContext().getProject();
         PalantirJavaFormatSettings settings = PalantirJavaFormatSettings.getInstance(project);
         Optional<FormatterService> formatter = formatterProvider.get(project, settings);
-        return new PalantirJavaFormatFormattingTask(request, formatter);
+        VirtualFile file = request.getContext().getVirtualFile();
+        return new PalantirJavaFormatFormattingTask(
+                request, file != null ? formatter.map(service -> sessionFor(file, service)) : formatter);
+    }
+
+    private FormatterService sessionFor(VirtualFile file, FormatterService service) {
+        DocumentSession session = sessions.asMap()
+                .compute(file, (_file, existing) ->
+                        existing != null && existing.service == service ? existing : new DocumentSession(service));
+        return session.session;
     }
 
     @Override
@@ -69,9 +90,21 @@ class PalantirJavaFormatFormattingService extends AsyncDocumentFormattingService
                 && PalantirJavaFormatSettings.getInstance(file.getProject()).isEnabled();
     }
 
+    /** The session of a file, which is replaced when the settings select another formatter. */
+    private static final class DocumentSession {
+        private final FormatterService service;
+        private final FormatterService session;
+
+        DocumentSession(FormatterService service) {
+            this.service = service;
+            this.session = service.newDocumentSession();
+        }
+    }
+
     private static final class PalantirJavaFormatFormattingTask implements FormattingTask {
         private final AsyncFormattingRequest request;
         private final Optional<FormatterService> formatterService;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
 
         public PalantirJavaFormatFormattingTask(
                 AsyncFormattingRequest request, Optional<FormatterService> formatterService) {
@@ -91,8 +124,15 @@ class PalantirJavaFormatFormattingService extends AsyncDocumentFormattingService
             try {
                 String formattedText = applyReplacements(
                         request.getDocumentText(),
-                        formatterService.get().getFormatReplacements(request.getDocumentText(), toRanges(request)));
-                request.onTextReady(formattedText);
+                        formatterService
+                                .get()
+                                .getFormatReplacements(request.getDocumentText(), toRanges(request), cancelled::get));
+                // Formatters that cannot be interrupted still run to completion, but their result is stale by now.
+                if (!cancelled.get()) {
+                    request.onTextReady(formattedText);
+                }
+            } catch (CancellationException e) {
+                // The IDE has moved on, for example because the document was edited again.
             } catch (FormatterException e) {
                 request.onError(
                         Notifications.PARSING_ERROR_TITLE,
@@ -142,7 +182,8 @@ class PalantirJavaFormatFormattingService extends AsyncDocumentFormattingService
 
         @Override
         public boolean cancel() {
-            return false;
+            cancelled.set(true);
+            return true;
         }
     }
 }
@@ -44,11 +44,14 @@ public final class BootstrappingFormatterService implements FormatterService {
     private final Path jdkPath;
     private final Integer jdkMajorVersion;
     private final List<Path> implementationClassPath;
+    private final FormatterWorkerPool workerPool;
 
     public BootstrappingFormatterService(Path jdkPath, Integer jdkMajorVersion, List<Path> implementationClassPath) {
         this.jdkPath = jdkPath;
         this.jdkMajorVersion = jdkMajorVersion;
         this.implementationClassPath = implementationClassPath;
+        this.workerPool = new FormatterWorkerPool(
+                commandBuilder().outputReplacements(false).build().workerCommand());
     }
 
     @Override
@@ -80,17 +83,14 @@ public final class BootstrappingFormatterService implements FormatterService {
 
     private ImmutableList<Replacement> getFormatReplacementsInternal(String input, Collection<Range<Integer>> ranges)
             throws IOException {
-        FormatterCliArgs command = FormatterCliArgs.builder()
-                .jdkPath(jdkPath)
-                .withJvmArgsForVersion(jdkMajorVersion)
-                .implementationClasspath(implementationClassPath)
+        FormatterCliArgs command = commandBuilder()
                 .outputReplacements(true)
                 .characterRanges(ranges.stream()
                         .map(BootstrappingFormatterService::toStringRange)
                         .collect(Collectors.toList()))
                 .build();
 
-        Optional<String> output = FormatterCommandRunner.runWithStdin(command.toArgs(), input);
+        Optional<String> output = workerPool.runWithStdin(command.toArgs(), command.formatterArgs(), input);
         if (output.isEmpty() || output.get().isEmpty()) {
             return ImmutableList.of();
         }
@@ -98,13 +98,17 @@ public final class BootstrappingFormatterService implements FormatterService {
     }
 
     private String runFormatterCommand(String input) throws IOException {
-        FormatterCliArgs command = FormatterCliArgs.builder()
+        FormatterCliArgs command = commandBuilder().outputReplacements(false).build();
+        return workerPool
+                .runWithStdin(command.toArgs(), command.formatterArgs(), input)
+                .orElse(input);
+    }
+
+    private FormatterCliArgs.Builder commandBuilder() {
+        return FormatterCliArgs.builder()
                 .jdkPath(jdkPath)
                 .withJvmArgsForVersion(jdkMajorVersion)
-                .implementationClasspath(implementationClassPath)
-                .outputReplacements(false)
-                .build();
-        return FormatterCommandRunner.runWithStdin(command.toArgs(), input).orElse(input);
+                .implementationClasspath(implementationClassPath);
     }
 
     /** Returns a range representation as parsed by "com.palantir.javaformat.java.CommandLineOptionsParser". */
@@ -130,7 +134,22 @@ public final class BootstrappingFormatterService implements FormatterService {
         boolean outputReplacements();
 
         default List<String> toArgs() {
-            ImmutableList.Builder<String> args = ImmutableList.<String>builder()
+            return ImmutableList.<String>builder()
+                    .addAll(jvmCommand())
+                    .addAll(formatterArgs())
+                    .build();
+        }
+
+        /** The command to start a long-lived formatter worker, which is sent {@link #formatterArgs()} per request. */
+        default List<String> workerCommand() {
+            return ImmutableList.<String>builder()
+                    .addAll(jvmCommand())
+                    .add("--worker")
+                    .build();
+        }
+
+        default List<String> jvmCommand() {
+            return ImmutableList.<String>builder()
                     .add(jdkPath().toAbsolutePath().toString())
                     .addAll(jvmArgs())
                     .add(
@@ -138,7 +157,12 @@ public final class BootstrappingFormatterService implements FormatterService {
                             implementationClasspath().stream()
                                     .map(path -> path.toAbsolutePath().toString())
                                     .collect(Collectors.joining(System.getProperty("path.separator"))))
-                    .add(FORMATTER_MAIN_CLASS);
+                    .add(FORMATTER_MAIN_CLASS)
+                    .build();
+        }
+
+        default List<String> formatterArgs() {
+            ImmutableList.Builder<String> args = ImmutableList.builder();
 
             if (!characterRanges().isEmpty()) {
                 args.add("--character-ranges", Joiner.on(',').join(characterRanges()));
@@ -43,14 +43,20 @@ final class FormatterCommandRunner {
             throw new RuntimeException("Interrupted while executing command", e);
         }
 
-        if (process.exitValue() != 0) {
-            String stderr = readToString(process.getErrorStream());
+        String stderr = process.exitValue() != 0 ? readToString(process.getErrorStream()) : "";
+        return toOutput(command, process.exitValue(), stdout, stderr);
+    }
+
+    /** Interprets the result of a formatter invocation, whether it came from a one-shot process or a worker. */
+    static Optional<String> toOutput(List<String> command, int exitValue, String stdout, String stderr)
+            throws IOException {
+        if (exitValue != 0) {
             if (isSyntaxError(stderr)) {
                 // Don't surface errors due to the formatter failing to parse the java file due to syntax errors.
                 // In this case, we just want to silently do nothing and not surface an error to e.g. Intellij.
                 return Optional.empty();
             }
-            throw new IOException(getErrorMessage(command, stdout, stderr));
+            throw new IOException(getErrorMessage(command, exitValue, stdout, stderr));
         }
 
         return Optional.of(stdout);
@@ -70,10 +76,10 @@ final class FormatterCommandRunner {
         }
     }
 
-    private static String getErrorMessage(List<String> command, String stdout, String stderr) {
+    private static String getErrorMessage(List<String> command, int exitValue, String stdout, String stderr) {
         return String.join(
                 "\n",
-                "Command terminated with exit value 1",
+                "Command terminated with exit value " + exitValue,
                 "Command: " + String.join(" ", command),
                 "Stdout:",
                 stdout,
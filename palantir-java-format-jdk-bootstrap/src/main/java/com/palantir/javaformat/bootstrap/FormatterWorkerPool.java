@@ -0,0 +1,144 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.bootstrap;
+
+import com.google.common.collect.ImmutableList;
+import com.palantir.javaformat.bootstrap.FormatterWorkerProcess.UnsupportedWorkerException;
+import com.palantir.javaformat.bootstrap.FormatterWorkerProcess.WorkerReply;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a small number of warm {@link FormatterWorkerProcess formatter workers} around so that formatting doesn't pay
+ * JVM startup on every call. Idle workers are shut down after {@code idleTimeout}, and workers that crash are
+ * replaced, as are workers that do not reply within {@code replyTimeout}. If the implementation on the classpath
+ * doesn't support worker mode (e.g. an older palantir-java-format), which a fresh worker tells by not greeting with the
+ * expected protocol version, we fall back to starting one process per request.
+ */
+final class FormatterWorkerPool {
+    private static final int MAX_IDLE_WORKERS = 2;
+    private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(5);
+    /** Also covers the startup of a worker JVM, until it greets. */
+    private static final Duration REPLY_TIMEOUT = Duration.ofMinutes(1);
+    private static final int MAX_ATTEMPTS = 2;
+
+    /** Shuts down idle workers, and kills workers that take too long to reply. */
+    private static final ScheduledExecutorService REAPER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "palantir-java-format-worker-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<String> workerCommand;
+    private final int maxIdleWorkers;
+    private final Duration idleTimeout;
+    private final Duration replyTimeout;
+    private final Deque<FormatterWorkerProcess> idleWorkers = new ArrayDeque<>();
+    private volatile boolean workersUnsupported = false;
+
+    FormatterWorkerPool(List<String> workerCommand) {
+        this(workerCommand, MAX_IDLE_WORKERS, IDLE_TIMEOUT, REPLY_TIMEOUT);
+    }
+
+    FormatterWorkerPool(List<String> workerCommand, int maxIdleWorkers, Duration idleTimeout, Duration replyTimeout) {
+        this.workerCommand = workerCommand;
+        this.maxIdleWorkers = maxIdleWorkers;
+        this.idleTimeout = idleTimeout;
+        this.replyTimeout = replyTimeout;
+    }
+
+    /**
+     * Formats {@code input} on a worker using the given formatter arguments, falling back to running
+     * {@code oneShotCommand} as a separate process if no worker can serve the request.
+     */
+    Optional<String> runWithStdin(List<String> oneShotCommand, List<String> formatterArgs, String input)
+            throws IOException {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !workersUnsupported; attempt++) {
+            FormatterWorkerProcess worker;
+            try {
+                worker = borrow();
+            } catch (UnsupportedWorkerException e) {
+                workersUnsupported = true;
+                break;
+            } catch (IOException e) {
+                // E.g. the worker was slow to start, which says nothing about whether later ones will be.
+                continue;
+            }
+            WorkerReply reply;
+            try {
+                reply = worker.format(formatterArgs, input, replyTimeout);
+            } catch (IOException e) {
+                worker.close();
+                continue;
+            }
+            release(worker);
+            List<String> command = ImmutableList.<String>builder()
+                    .addAll(workerCommand)
+                    .addAll(formatterArgs)
+                    .build();
+            return FormatterCommandRunner.toOutput(command, reply.exitCode(), reply.stdout(), reply.stderr());
+        }
+        return FormatterCommandRunner.runWithStdin(oneShotCommand, input);
+    }
+
+    private FormatterWorkerProcess borrow() throws IOException {
+        synchronized (idleWorkers) {
+            FormatterWorkerProcess worker;
+            while ((worker = idleWorkers.pollFirst()) != null) {
+                if (worker.isAlive()) {
+                    return worker;
+                }
+                worker.close();
+            }
+        }
+        return FormatterWorkerProcess.start(workerCommand, replyTimeout, REAPER);
+    }
+
+    private void release(FormatterWorkerProcess worker) {
+        synchronized (idleWorkers) {
+            if (idleWorkers.size() >= maxIdleWorkers) {
+                worker.close();
+                return;
+            }
+            worker.markIdle();
+            // Most recently used first, so that the warmest worker serves the next request.
+            idleWorkers.addFirst(worker);
+        }
+        REAPER.schedule(this::reapIdleWorkers, idleTimeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void reapIdleWorkers() {
+        synchronized (idleWorkers) {
+            Iterator<FormatterWorkerProcess> iterator = idleWorkers.iterator();
+            while (iterator.hasNext()) {
+                FormatterWorkerProcess worker = iterator.next();
+                if (worker.idleNanos() >= idleTimeout.toNanos() || !worker.isAlive()) {
+                    worker.close();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+}
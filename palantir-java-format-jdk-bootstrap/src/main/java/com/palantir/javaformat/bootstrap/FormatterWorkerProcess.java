@@ -0,0 +1,223 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.bootstrap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.immutables.value.Value;
+
+/**
+ * A formatter JVM started with {@code --worker}, which serves any number of requests over its stdin/stdout. See
+ * {@code com.palantir.javaformat.java.FormatterWorker} for the protocol.
+ *
+ * <p>Reads from the worker give up after a timeout, by killing the worker, so that a hung worker does not hang its
+ * caller.
+ */
+final class FormatterWorkerProcess implements Closeable {
+    /** The version of {@code FormatterWorker.PROTOCOL_VERSION} that this speaks. */
+    private static final int PROTOCOL_VERSION = 1;
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder().build();
+
+    private final Process process;
+    private final Writer stdin;
+    private final Reader stdout;
+    private final ScheduledExecutorService timer;
+    private long idleSinceNanos = System.nanoTime();
+
+    private FormatterWorkerProcess(Process process, ScheduledExecutorService timer) {
+        this.process = process;
+        this.stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        this.stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        this.timer = timer;
+    }
+
+    /**
+     * Starts a worker and waits up to {@code timeout} for its greeting.
+     *
+     * @throws UnsupportedWorkerException if the implementation exits without a greeting, as one that does not know
+     *     {@code --worker} does, or greets with another protocol version
+     */
+    static FormatterWorkerProcess start(List<String> command, Duration timeout, ScheduledExecutorService timer)
+            throws IOException {
+        // Per-request stderr is part of the reply, so anything else the JVM prints there can be dropped. Leaving it
+        // as an undrained pipe could eventually block the worker.
+        Process process = new ProcessBuilder()
+                .command(command)
+                .redirectError(Redirect.DISCARD)
+                .start();
+        FormatterWorkerProcess worker = new FormatterWorkerProcess(process, timer);
+        try {
+            worker.handshake(timeout);
+        } catch (IOException | RuntimeException e) {
+            worker.close();
+            throw e;
+        }
+        return worker;
+    }
+
+    private void handshake(Duration timeout) throws IOException {
+        String greeting;
+        try {
+            greeting = readFrame(timeout);
+        } catch (EOFException e) {
+            throw new UnsupportedWorkerException("Formatter exited without greeting, so it has no worker mode", e);
+        }
+        JsonNode protocol = MAPPER.readTree(greeting).get("protocol");
+        if (protocol == null || protocol.asInt() != PROTOCOL_VERSION) {
+            throw new UnsupportedWorkerException("Formatter worker speaks another protocol: " + greeting);
+        }
+    }
+
+    /** Formats {@code input}, giving up if the worker does not reply within {@code timeout}. */
+    WorkerReply format(List<String> args, String input, Duration timeout) throws IOException {
+        ObjectNode request = MAPPER.createObjectNode();
+        ArrayNode requestArgs = request.putArray("args");
+        args.forEach(requestArgs::add);
+        request.put("input", input);
+        writeFrame(stdin, MAPPER.writeValueAsString(request));
+
+        JsonNode reply = MAPPER.readTree(readFrame(timeout));
+        return ImmutableWorkerReply.of(
+                reply.get("exitCode").asInt(),
+                reply.get("stdout").asText(),
+                reply.get("stderr").asText());
+    }
+
+    /** Reads the next frame, killing the worker if it takes longer than {@code timeout}. */
+    private String readFrame(Duration timeout) throws IOException {
+        AtomicBoolean timedOut = new AtomicBoolean(false);
+        ScheduledFuture<?> watchdog = timer.schedule(
+                () -> {
+                    timedOut.set(true);
+                    process.destroyForcibly();
+                },
+                timeout.toNanos(),
+                TimeUnit.NANOSECONDS);
+        try {
+            return readFrame(stdout);
+        } catch (IOException e) {
+            if (timedOut.get()) {
+                throw new IOException("Formatter worker did not reply within " + timeout, e);
+            }
+            throw e;
+        } finally {
+            watchdog.cancel(false);
+        }
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    void markIdle() {
+        idleSinceNanos = System.nanoTime();
+    }
+
+    long idleNanos() {
+        return System.nanoTime() - idleSinceNanos;
+    }
+
+    @Override
+    public void close() {
+        try {
+            // Closing stdin lets the worker exit cleanly.
+            stdin.close();
+        } catch (IOException e) {
+            // The worker is gone already.
+        }
+        process.destroy();
+    }
+
+    private static String readFrame(Reader reader) throws IOException {
+        int length = 0;
+        while (true) {
+            int c = reader.read();
+            if (c == -1) {
+                throw new EOFException("Formatter worker exited");
+            }
+            if (c == '\n') {
+                break;
+            }
+            if (c < '0' || c > '9') {
+                throw new IOException("Invalid frame length character from formatter worker: " + (char) c);
+            }
+            length = Math.addExact(Math.multiplyExact(length, 10), c - '0');
+        }
+
+        char[] payload = new char[length];
+        int read = 0;
+        while (read < length) {
+            int count = reader.read(payload, read, length - read);
+            if (count == -1) {
+                throw new EOFException("Formatter worker exited while replying");
+            }
+            read += count;
+        }
+        return new String(payload);
+    }
+
+    private static void writeFrame(Writer writer, String payload) throws IOException {
+        writer.write(Integer.toString(payload.length()));
+        writer.write('\n');
+        writer.write(payload);
+        writer.flush();
+    }
+
+    /** Thrown when the implementation cannot serve requests as a worker at all. */
+    static final class UnsupportedWorkerException extends IOException {
+        UnsupportedWorkerException(String message) {
+            super(message);
+        }
+
+        UnsupportedWorkerException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    @Value.Immutable
+    interface WorkerReply {
+        @Value.Parameter
+        int exitCode();
+
+        @Value.Parameter
+        String stdout();
+
+        @Value.Parameter
+        String stderr();
+    }
+}
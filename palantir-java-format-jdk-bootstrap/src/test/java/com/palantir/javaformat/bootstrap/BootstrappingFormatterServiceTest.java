@@ -71,6 +71,25 @@ final class BootstrappingFormatterServiceTest {
         });
     }
 
+    @Test
+    void reuses_formatter_across_requests() {
+        String input = getTestResourceContent("format.input");
+        String expectedOutput = getTestResourceContent("format.output");
+        BootstrappingFormatterService formatter = getFormatter();
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(formatter.formatSourceReflowStringsAndFixImports(input)).isEqualTo(expectedOutput);
+        }
+    }
+
+    @Test
+    void ignores_syntax_errors() {
+        String input = "class A { void f( }\n";
+
+        assertThat(getFormatter().getFormatReplacements(input, List.of(Range.open(0, input.length()))))
+                .isEmpty();
+    }
+
     private BootstrappingFormatterService getFormatter() {
         return new BootstrappingFormatterService(
                 javaBinPath(), Runtime.version().feature(), getClasspath());
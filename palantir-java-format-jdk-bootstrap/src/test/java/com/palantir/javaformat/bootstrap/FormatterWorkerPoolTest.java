@@ -0,0 +1,47 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.bootstrap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+final class FormatterWorkerPoolTest {
+    private static final List<String> ECHO = List.of("cat");
+
+    @Test
+    void falls_back_to_one_shot_command_without_worker_mode() throws IOException {
+        // Like an implementation without --worker, this exits without greeting.
+        String java = Paths.get(System.getProperty("java.home")).resolve("bin/java").toString();
+        FormatterWorkerPool pool =
+                new FormatterWorkerPool(List.of(java, "-version"), 1, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+        assertThat(pool.runWithStdin(ECHO, List.of(), "input")).hasValue("input");
+    }
+
+    @Test
+    void gives_up_on_workers_that_do_not_reply() throws IOException {
+        // Never greets, and would echo requests rather than reply to them.
+        FormatterWorkerPool pool = new FormatterWorkerPool(ECHO, 1, Duration.ofMinutes(1), Duration.ofMillis(100));
+
+        assertThat(pool.runWithStdin(ECHO, List.of(), "input")).hasValue("input");
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+/**
+ * Inputs for the benchmarks, from everyday code to shapes that are known to be expensive to format. The inputs are
+ * generated rather than checked in, and are deliberately left unformatted so that every stage has work to do. They
+ * all have imports to sort and remove, and string literals that exceed the column limit.
+ */
+public enum Corpus {
+    /** A short class, the size of a typical value type or test. */
+    SMALL {
+        @Override
+        String source() {
+            StringBuilder source = header();
+            source.append("public final class Small {\n");
+            appendMethod(source, 0);
+            source.append("}\n");
+            return source.toString();
+        }
+    },
+
+    /** A service-sized class with a few dozen methods of ordinary control flow. */
+    MEDIUM {
+        @Override
+        String source() {
+            StringBuilder source = header();
+            source.append("public final class Medium {\n");
+            for (int i = 0; i < 40; i++) {
+                appendMethod(source, i);
+            }
+            source.append("}\n");
+            return source.toString();
+        }
+    },
+
+    /** Builder and stream chains that are hundreds of calls long. */
+    LONG_METHOD_CHAINS {
+        @Override
+        String source() {
+            StringBuilder source = header();
+            source.append("public final class Chains {\n");
+            source.append("  Object build(Builder builder) {\n    return builder");
+            for (int i = 0; i < 300; i++) {
+                source.append(".with").append(i).append("(argument").append(i).append(", \"value").append(i);
+                source.append("\")");
+            }
+            source.append(".build();\n  }\n");
+            source.append("  List<String> stream(List<String> input) {\n    return input.stream()");
+            for (int i = 0; i < 100; i++) {
+                source.append(".map(s -> s + ").append(i).append(").filter(s -> !s.isEmpty())");
+            }
+            source.append(".collect(Collectors.toList());\n  }\n}\n");
+            return source.toString();
+        }
+    },
+
+    /** Lambdas nested inside the arguments of method calls, dozens of levels deep. */
+    NESTED_LAMBDAS {
+        @Override
+        String source() {
+            StringBuilder source = header();
+            source.append("public final class Lambdas {\n  void run(Executor executor) {\n");
+            int depth = 30;
+            for (int i = 0; i < depth; i++) {
+                source.append("executor.execute(value").append(i).append(" -> { log(\"level ").append(i);
+                source.append("\", value").append(i).append(");\n");
+            }
+            for (int i = 0; i < depth; i++) {
+                source.append("});\n");
+            }
+            source.append("  }\n}\n");
+            return source.toString();
+        }
+    };
+
+    abstract String source();
+
+    private static StringBuilder header() {
+        return new StringBuilder()
+                .append("package com.example;\n\n")
+                .append("import java.util.Map;\n")
+                .append("import java.util.List;\n")
+                .append("import java.util.concurrent.Executor;\n")
+                .append("import java.util.stream.Collectors;\n")
+                .append("import com.google.common.collect.ImmutableList;\n")
+                .append("import java.util.Optional;\n")
+                .append("import java.io.IOException;\n\n");
+    }
+
+    private static void appendMethod(StringBuilder source, int index) {
+        source.append("  /** Does the work for item ").append(index).append(". */\n");
+        source.append("  public Optional<String> process").append(index);
+        source.append("(List<String> items, Map<String, Integer> counts) throws IOException {\n");
+        source.append("    if (items.isEmpty()) { return Optional.empty(); }\n");
+        source.append("    for (String item : items) {\n");
+        source.append("      counts.merge(item, 1, Integer::sum);\n");
+        source.append("      if (counts.get(item) > ").append(index).append(") {\n");
+        source.append("        throw new IOException(\"Item \" + item + \" was seen more often than we are");
+        source.append(" prepared to handle in a single batch, which is ").append(index).append(" times\");\n");
+        source.append("      }\n    }\n");
+        source.append("    return items.stream().filter(item -> item.length() > ").append(index);
+        source.append(").map(String::trim).findFirst();\n  }\n\n");
+    }
+}
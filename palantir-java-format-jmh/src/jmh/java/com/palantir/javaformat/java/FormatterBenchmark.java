@@ -0,0 +1,144 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import com.palantir.javaformat.OpsBuilder;
+import com.palantir.javaformat.OpsBuilder.OpsOutput;
+import com.palantir.javaformat.doc.DocBuilder;
+import com.palantir.javaformat.doc.Level;
+import com.palantir.javaformat.doc.Obs;
+import com.palantir.javaformat.doc.State;
+import com.palantir.javaformat.java.JavaFormatterOptions.Style;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures each stage of formatting a file separately, as well as the whole pipeline, so that a regression can be
+ * pinned on a stage. Each stage benchmark starts from the output of the previous stages, which is computed once per
+ * trial; the stages mirror {@link Formatter#format} and {@link FormatFileCallable}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@SuppressWarnings("NullAway.Init") // Initialized by JMH, in setUp
+public class FormatterBenchmark {
+
+    @Param
+    public Corpus corpus;
+
+    private final JavaFormatterOptions options =
+            JavaFormatterOptions.builder().style(Style.PALANTIR).build();
+    private final Formatter formatter = Formatter.createFormatter(options);
+
+    private String source;
+    private String formattedSource;
+    private JavaInput javaInput;
+    private JCCompilationUnit unit;
+    private JavaCommentsHelper commentsHelper;
+    private OpsOutput opsOutput;
+    private Level doc;
+    private State finalState;
+
+    @Setup
+    public void setUp() throws FormatterException {
+        source = corpus.source();
+        javaInput = new JavaInput(source);
+        unit = parse();
+        javaInput.setCompilationUnit(unit);
+        commentsHelper = new JavaCommentsHelper(javaInput.getLineSeparator(), options);
+        opsOutput = generateOps();
+        doc = buildDoc();
+        finalState = computeBreaks();
+        // The import and string passes run on the output of formatting.
+        formattedSource = formatter.formatSource(source);
+    }
+
+    @Benchmark
+    public JavaInput lex() throws FormatterException {
+        return new JavaInput(source);
+    }
+
+    @Benchmark
+    public JCCompilationUnit parse() throws FormatterException {
+        return JavacSession.forThread(/* allowStringFolding= */ false).parse(source);
+    }
+
+    @Benchmark
+    public OpsOutput generateOps() {
+        OpsBuilder opsBuilder = new OpsBuilder(javaInput);
+        Formatter.createVisitor(opsBuilder, options).scan(unit, null);
+        opsBuilder.sync(source.length());
+        opsBuilder.drain();
+        return opsBuilder.build();
+    }
+
+    @Benchmark
+    public Level buildDoc() {
+        return new DocBuilder().withOps(opsOutput.ops()).build();
+    }
+
+    @Benchmark
+    public State computeBreaks() {
+        return doc.computeBreaks(commentsHelper, options.maxLineLength(), State.startingState(), Obs.untraced());
+    }
+
+    @Benchmark
+    public JavaOutput writeOutput() {
+        JavaOutput javaOutput = new JavaOutput(javaInput, opsOutput.inputMetadata());
+        doc.write(finalState, javaOutput);
+        javaOutput.flush();
+        return javaOutput;
+    }
+
+    @Benchmark
+    public String removeUnusedImports() throws FormatterException {
+        return RemoveUnusedImports.removeUnusedImports(formattedSource);
+    }
+
+    @Benchmark
+    public String reorderImports() throws FormatterException {
+        return ImportOrderer.reorderImports(formattedSource, options.style());
+    }
+
+    @Benchmark
+    public String wrapStrings() throws FormatterException {
+        return StringWrapper.wrap(options.maxLineLength(), formattedSource, formatter);
+    }
+
+    @Benchmark
+    public String formatSource() throws FormatterException {
+        return formatter.formatSource(source);
+    }
+
+    @Benchmark
+    public String formatFile() throws FormatterException {
+        return new FormatFileCallable(CommandLineOptions.builder().build(), source, options).call();
+    }
+}
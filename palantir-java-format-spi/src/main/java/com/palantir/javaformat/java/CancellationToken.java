@@ -0,0 +1,43 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Lets the caller of a format request stop it once its result is no longer wanted, for example because the file was
+ * edited again. The formatter checks the token as it goes, and gives up with a {@link CancellationException} soon after
+ * it is cancelled.
+ */
+@FunctionalInterface
+public interface CancellationToken {
+
+    /** Whether the request should stop. Must be cheap and thread-safe, as it is checked often. */
+    boolean isCancelled();
+
+    /** Throws a {@link CancellationException} if the request should stop. */
+    default void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("Formatting was cancelled");
+        }
+    }
+
+    /** A token for requests that run to completion. */
+    static CancellationToken never() {
+        return () -> false;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.errorprone.annotations.Immutable;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * Bounds the search for the layout of a file, by the time it may take or by the number of layouts it may explore.
+ * Once a format run has used up its budget, the levels that are left are broken the normal way, without trying the
+ * alternatives, so the run finishes quickly but its output may not be the one that an unlimited search would find.
+ * Such output is still correctly formatted Java, and the run reports that it was degraded.
+ */
+@Immutable
+public final class FormatBudget {
+    private static final FormatBudget UNLIMITED = new FormatBudget(Optional.empty(), OptionalLong.empty());
+
+    private final Optional<Duration> timeLimit;
+    private final OptionalLong explorationLimit;
+
+    private FormatBudget(Optional<Duration> timeLimit, OptionalLong explorationLimit) {
+        this.timeLimit = timeLimit;
+        this.explorationLimit = explorationLimit;
+    }
+
+    /** The default budget, which lets the search run to completion. */
+    public static FormatBudget unlimited() {
+        return UNLIMITED;
+    }
+
+    /** A budget of {@code timeLimit} of wall-clock time for the layout of each file, counted from its start. */
+    public static FormatBudget timeLimit(Duration timeLimit) {
+        checkArgument(!timeLimit.isNegative(), "timeLimit must not be negative");
+        return new FormatBudget(Optional.of(timeLimit), OptionalLong.empty());
+    }
+
+    /** A budget of {@code explorationLimit} explored layouts of levels for each file. */
+    public static FormatBudget explorationLimit(long explorationLimit) {
+        checkArgument(explorationLimit >= 0, "explorationLimit must not be negative");
+        return new FormatBudget(Optional.empty(), OptionalLong.of(explorationLimit));
+    }
+
+    public Optional<Duration> timeLimit() {
+        return timeLimit;
+    }
+
+    public OptionalLong explorationLimit() {
+        return explorationLimit;
+    }
+
+    public boolean isUnlimited() {
+        return !timeLimit.isPresent() && !explorationLimit.isPresent();
+    }
+
+    @Override
+    public String toString() {
+        if (timeLimit.isPresent()) {
+            return "FormatBudget{timeLimit=" + timeLimit.get() + '}';
+        }
+        if (explorationLimit.isPresent()) {
+            return "FormatBudget{explorationLimit=" + explorationLimit.getAsLong() + '}';
+        }
+        return "FormatBudget{unlimited}";
+    }
+}
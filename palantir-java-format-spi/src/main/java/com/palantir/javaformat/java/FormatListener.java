@@ -0,0 +1,65 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+/**
+ * Told how long each phase of formatting a file took, so that hosts embedding the formatter can export the timings to
+ * their own metrics and notice regressions. Reformatting a file while reflowing strings reports the phases of that
+ * format too, so phases may nest within {@link Phase#REFLOW_STRINGS}.
+ *
+ * <p>Called on the thread that formats the file, so a listener that is shared between files formatted in parallel
+ * must be thread-safe. Calls should return quickly, as they are made while formatting.
+ */
+public interface FormatListener {
+
+    /** The phases of formatting a file, in the order in which they run. */
+    enum Phase {
+        /** Splitting the input into tokens, comments and whitespace. */
+        LEX,
+        /** Parsing the input with javac. */
+        PARSE,
+        /** Walking the syntax tree to generate the formatting ops. */
+        VISIT,
+        /** Building the tree of docs from the ops. */
+        DOC_BUILD,
+        /** Searching for the line breaks that lay the docs out best. */
+        COMPUTE_BREAKS,
+        /** Writing the laid out docs. */
+        WRITE,
+        /** Diffing the written output against the input into replacements. */
+        REPLACEMENTS,
+        /** Ordering imports and removing unused ones. */
+        FIX_IMPORTS,
+        /** Reflowing string literals that exceed the column limit, which formats the file again. */
+        REFLOW_STRINGS
+    }
+
+    /** Called when a file has been split into {@code tokens} tokens, with the size of the file in UTF-8. */
+    default void inputLexed(int bytes, int tokens) {}
+
+    /**
+     * Called when a phase of formatting a file is done, with the wall-clock time that it took. Each phase is reported
+     * once per format, but some phases format the file again, such as {@link Phase#REFLOW_STRINGS}, so the times of a
+     * phase should be summed.
+     */
+    default void phaseFinished(Phase phase, long nanos) {}
+
+    /** A listener that ignores everything. */
+    static FormatListener none() {
+        return NoFormatListener.INSTANCE;
+    }
+}
@@ -36,6 +36,47 @@ public interface FormatterService {
     ImmutableList<Replacement> getFormatReplacements(String input, Collection<Range<Integer>> ranges)
             throws FormatterException;
 
+    /**
+     * Like {@link #getFormatReplacements(String, Collection)}, but stops early if {@code cancellationToken} is
+     * cancelled. Implementations that cannot stop once they have started only check the token up front.
+     *
+     * @param input the input compilation unit
+     * @param ranges the character ranges to reformat
+     * @param cancellationToken checked while formatting
+     * @return a list of {@link Replacement}s, sorted from low index to high index, without overlaps
+     * @throws FormatterException if the input string cannot be parsed
+     * @throws java.util.concurrent.CancellationException if {@code cancellationToken} was cancelled
+     */
+    default ImmutableList<Replacement> getFormatReplacements(
+            String input, Collection<Range<Integer>> ranges, CancellationToken cancellationToken)
+            throws FormatterException {
+        cancellationToken.throwIfCancelled();
+        return getFormatReplacements(input, ranges);
+    }
+
+    /**
+     * Returns a service for formatting successive versions of one document, as an editor does after every edit. It may
+     * reuse the work of its previous requests for the parts of the document that did not change, so it must only be
+     * used for one document. Implementations that keep nothing between requests return themselves.
+     *
+     * @return a service for one document
+     */
+    default FormatterService newDocumentSession() {
+        return this;
+    }
+
+    /**
+     * Returns a service that formats like this one, and reports the phases of every file that it formats to
+     * {@code listener}. Implementations that cannot observe their phases, for example because they format in another
+     * process, return themselves and never call the listener.
+     *
+     * @param listener told how long each phase of formatting a file took
+     * @return a service that reports to {@code listener}
+     */
+    default FormatterService withListener(FormatListener listener) {
+        return this;
+    }
+
     /**
      * Formats an input string (a Java compilation unit), reflows strings and fixes imports.
      *
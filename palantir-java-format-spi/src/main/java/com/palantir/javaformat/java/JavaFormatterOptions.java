@@ -59,9 +59,19 @@ public final class JavaFormatterOptions {
 
     private final boolean formatJavadoc;
 
-    private JavaFormatterOptions(Style style, boolean formatJavadoc) {
+    private final boolean parallelLayout;
+
+    private final boolean streamOps;
+
+    private final FormatBudget formatBudget;
+
+    private JavaFormatterOptions(
+            Style style, boolean formatJavadoc, boolean parallelLayout, boolean streamOps, FormatBudget formatBudget) {
         this.style = style;
         this.formatJavadoc = formatJavadoc;
+        this.parallelLayout = parallelLayout;
+        this.streamOps = streamOps;
+        this.formatBudget = formatBudget;
     }
 
     /** Returns the multiplier for the unit of indent. */
@@ -77,6 +87,29 @@ public final class JavaFormatterOptions {
         return formatJavadoc;
     }
 
+    /**
+     * Whether large members of a class are laid out in parallel, on the common fork-join pool. This does not change the
+     * output. It has no effect when a {@link #formatBudget()} is set, as the output would then depend on which thread
+     * spends the budget first. Off by default, since callers that format several files at once already keep every core
+     * busy.
+     */
+    public boolean parallelLayout() {
+        return parallelLayout;
+    }
+
+    /**
+     * Whether the formatting operations for the syntax tree are turned into the document to lay out as they are made,
+     * rather than all being collected first. This uses less memory for large files, and does not change the output.
+     */
+    public boolean streamOps() {
+        return streamOps;
+    }
+
+    /** The budget for the layout search of each file, see {@link FormatBudget}. */
+    public FormatBudget formatBudget() {
+        return formatBudget;
+    }
+
     /** Returns the code style. */
     public Style style() {
         return style;
@@ -99,6 +132,12 @@ public final class JavaFormatterOptions {
 
         private boolean formatJavadoc = false;
 
+        private boolean parallelLayout = false;
+
+        private boolean streamOps = false;
+
+        private FormatBudget formatBudget = FormatBudget.unlimited();
+
         private Builder() {}
 
         public Builder style(Style style) {
@@ -111,8 +150,23 @@ public final class JavaFormatterOptions {
             return this;
         }
 
+        public Builder parallelLayout(boolean parallelLayout) {
+            this.parallelLayout = parallelLayout;
+            return this;
+        }
+
+        public Builder streamOps(boolean streamOps) {
+            this.streamOps = streamOps;
+            return this;
+        }
+
+        public Builder formatBudget(FormatBudget formatBudget) {
+            this.formatBudget = formatBudget;
+            return this;
+        }
+
         public JavaFormatterOptions build() {
-            return new JavaFormatterOptions(style, formatJavadoc);
+            return new JavaFormatterOptions(style, formatJavadoc, parallelLayout, streamOps, formatBudget);
         }
     }
 }
@@ -1,5 +1,5 @@
 /*
- * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -13,10 +13,10 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package com.palantir.javaformat.doc;
 
-import com.google.errorprone.annotations.Immutable;
-import java.util.function.Supplier;
+package com.palantir.javaformat.java;
 
-@Immutable
-interface ImmutableSupplier<T> extends Supplier<T> {}
+/** The listener of {@link FormatListener#none()}, which callers can compare against to skip measuring. */
+enum NoFormatListener implements FormatListener {
+    INSTANCE
+}
@@ -18,11 +18,14 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import com.google.common.base.MoreObjects;
+import com.google.common.hash.Hasher;
 import com.google.errorprone.annotations.Immutable;
 import com.palantir.javaformat.doc.Break;
 import com.palantir.javaformat.doc.BreakTag;
 import com.palantir.javaformat.doc.Level;
 import com.palantir.javaformat.doc.State;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
 /**
  * An indent for a {@link Level} or {@link Break}. The indent is either a constant {@code int}, or a conditional
@@ -34,6 +37,12 @@ public abstract class Indent {
 
     public abstract int eval(State state);
 
+    /** Calls {@code action} with each {@link BreakTag} that the value of this indent depends on. */
+    public abstract void forEachCondition(Consumer<BreakTag> action);
+
+    /** Adds the structure of this indent to {@code hasher}, identifying conditions by {@code tagIndex}. */
+    public abstract void fingerprint(Hasher hasher, ToIntFunction<BreakTag> tagIndex);
+
     /** A constant function, returning a constant indent. */
     @JsonTypeName("const")
     public static final class Const extends Indent {
@@ -55,6 +64,14 @@ public abstract class Indent {
             return n;
         }
 
+        @Override
+        public void forEachCondition(Consumer<BreakTag> _action) {}
+
+        @Override
+        public void fingerprint(Hasher hasher, ToIntFunction<BreakTag> _tagIndex) {
+            hasher.putByte((byte) 'c').putInt(n);
+        }
+
         @Override
         public String toString() {
             return MoreObjects.toStringHelper(this).add("n", n).toString();
@@ -88,6 +105,20 @@ public abstract class Indent {
             return (state.wasBreakTaken(condition) ? thenIndent : elseIndent).eval(state);
         }
 
+        @Override
+        public void forEachCondition(Consumer<BreakTag> action) {
+            action.accept(condition);
+            thenIndent.forEachCondition(action);
+            elseIndent.forEachCondition(action);
+        }
+
+        @Override
+        public void fingerprint(Hasher hasher, ToIntFunction<BreakTag> tagIndex) {
+            hasher.putByte((byte) 'i').putInt(tagIndex.applyAsInt(condition));
+            thenIndent.fingerprint(hasher, tagIndex);
+            elseIndent.fingerprint(hasher, tagIndex);
+        }
+
         @Override
         public String toString() {
             return MoreObjects.toStringHelper(this)
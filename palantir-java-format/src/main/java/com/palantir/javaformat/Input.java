@@ -16,7 +16,6 @@ package com.palantir.javaformat;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableRangeMap;
 import com.google.errorprone.annotations.Immutable;
 import com.palantir.javaformat.java.FormatterDiagnostic;
@@ -111,7 +110,8 @@ public abstract class Input extends InputOutput {
     /** A map from [start, end] position ranges to {@link Token}s. */
     public abstract ImmutableRangeMap<Integer, ? extends Token> getPositionTokenMap();
 
-    public abstract ImmutableMap<Integer, Integer> getPositionToColumnMap();
+    /** Returns the 0-based column of a character offset in the input, counting each character as one column. */
+    public abstract int getColumn(int inputPosition);
 
     public abstract String getText();
 
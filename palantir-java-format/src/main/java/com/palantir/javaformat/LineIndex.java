@@ -0,0 +1,80 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat;
+
+import java.util.Arrays;
+
+/**
+ * The start offsets of the lines of a text, found in one scan of it, so that the line and column of any offset are
+ * found by a binary search rather than by scanning the text again. Lines end in {@code \n}, {@code \r} or
+ * {@code \r\n}, as in {@link Newlines}.
+ */
+public final class LineIndex {
+    private final int[] starts;
+    private final int length;
+
+    private LineIndex(int[] starts, int length) {
+        this.starts = starts;
+        this.length = length;
+    }
+
+    public static LineIndex of(String text) {
+        int length = text.length();
+        int[] starts = new int[16];
+        int count = 1;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c > '\r' || (c != '\n' && c != '\r')) {
+                continue;
+            }
+            if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                i++;
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+            }
+            starts[count++] = i + 1;
+        }
+        return new LineIndex(Arrays.copyOf(starts, count), length);
+    }
+
+    /** Returns the number of lines, which is one more than the number of line breaks. */
+    public int lineCount() {
+        return starts.length;
+    }
+
+    /** Returns the offset of the first character of the 0-based {@code line}. */
+    public int lineStart(int line) {
+        return starts[line];
+    }
+
+    /** Returns the offset just past the 0-based {@code line}, including its line break. */
+    public int lineEnd(int line) {
+        return line + 1 < starts.length ? starts[line + 1] : length;
+    }
+
+    /** Returns the 0-based line of the character at {@code position}. */
+    public int lineOf(int position) {
+        int found = Arrays.binarySearch(starts, position);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    /** Returns the 0-based column of the character at {@code position}, counting each character as one column. */
+    public int columnOf(int position) {
+        return position - starts[lineOf(position)];
+    }
+}
@@ -19,7 +19,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.ListMultimap;
 import com.palantir.javaformat.Indent.Const;
 import com.palantir.javaformat.Input.Tok;
 import com.palantir.javaformat.doc.Break;
@@ -28,6 +28,7 @@ import com.palantir.javaformat.doc.Comment;
 import com.palantir.javaformat.doc.Doc;
 import com.palantir.javaformat.doc.DocBuilder;
 import com.palantir.javaformat.doc.FillMode;
+import com.palantir.javaformat.doc.HasUniqueId;
 import com.palantir.javaformat.doc.NonBreakingSpace;
 import com.palantir.javaformat.doc.State;
 import com.palantir.javaformat.doc.Token;
@@ -42,6 +43,8 @@ import java.lang.annotation.Target;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
 import org.immutables.value.Value;
 
 /** An {@code OpsBuilder} creates a list of {@link Op}s, which is turned into a {@link Doc} by {@link DocBuilder}. */
@@ -158,6 +161,11 @@ public final class OpsBuilder {
     private final List<Op> ops = new ArrayList<>();
     /** Used to record blank-line information. */
     private final InputMetadataBuilder inputMetadataBuilder = new InputMetadataBuilder();
+    /** The indices of the tokens after comments that are followed by a blank line, which is kept. */
+    private final List<Integer> blankLinesAfterComments = new ArrayList<>();
+    /** Where the ops go as they are made, instead of into {@link #ops}, if anywhere. */
+    @Nullable
+    private final OpStream stream;
 
     private static final Const ZERO = Const.ZERO;
 
@@ -177,7 +185,11 @@ public final class OpsBuilder {
                 throw new IllegalStateException();
             }
         }
-        ops.add(op);
+        if (stream != null) {
+            stream.add(op);
+        } else {
+            ops.add(op);
+        }
     }
 
     /** Add a list of {@link Op}s. */
@@ -193,7 +205,21 @@ public final class OpsBuilder {
      * @param input the {@link Input}, used for retrieve information from the AST
      */
     public OpsBuilder(Input input) {
+        this(input, null);
+    }
+
+    private OpsBuilder(Input input, @Nullable DocBuilder docBuilder) {
         this.input = input;
+        this.stream = docBuilder != null ? new OpStream(docBuilder) : null;
+    }
+
+    /**
+     * Returns an {@code OpsBuilder} that adds its ops to {@code docBuilder} as they are made, with the comments
+     * inserted, rather than keeping them all until {@link #build}. It holds back only the ops that comments can still
+     * be inserted before, so the ops of a large input are never all in memory at once. The {@link Doc} is the same.
+     */
+    public static OpsBuilder streamingTo(Input input, DocBuilder docBuilder) {
+        return new OpsBuilder(input, docBuilder);
     }
 
     /** Get the {@code OpsBuilder}'s {@link Input}. */
@@ -496,7 +522,8 @@ public final class OpsBuilder {
         return token.getTok().getIndex();
     }
 
-    private static final NonBreakingSpace SPACE = NonBreakingSpace.make();
+    /** Shared by all runs, so it must not take an id from the run that happens to load this class. */
+    private static final NonBreakingSpace SPACE = HasUniqueId.unscoped(NonBreakingSpace::make);
 
     @Target(ElementType.TYPE)
     @Retention(RetentionPolicy.SOURCE)
@@ -511,11 +538,31 @@ public final class OpsBuilder {
         InputMetadata inputMetadata();
     }
 
-    /** Build a list of {@link Op}s from the {@code OpsBuilder}. */
+    /**
+     * Build a list of {@link Op}s from the {@code OpsBuilder}. If the ops were passed on to a {@link DocBuilder} as
+     * they were made, see {@link #streamingTo}, this passes on the last of them instead, and the list is empty.
+     */
     public OpsOutput build() {
         markForPartialFormat();
-        // Rewrite the ops to insert comments.
-        Multimap<Integer, Op> tokOps = ArrayListMultimap.create();
+        ImmutableList<Op> newOps;
+        if (stream != null) {
+            stream.finish();
+            newOps = ImmutableList.of();
+        } else {
+            newOps = insertComments();
+        }
+        for (int k : blankLinesAfterComments) {
+            inputMetadataBuilder.blankLine(k, BlankLineWanted.YES);
+        }
+        return ImmutableOpsOutput.builder()
+                .ops(newOps)
+                .inputMetadata(inputMetadataBuilder.build())
+                .build();
+    }
+
+    /** Rewrites the ops to insert comments. */
+    private ImmutableList<Op> insertComments() {
+        ListMultimap<Integer, Op> tokOps = ArrayListMultimap.create();
         int opsN = ops.size();
         for (int i = 0; i < opsN; i++) {
             Op op = ops.get(i);
@@ -526,7 +573,6 @@ public final class OpsBuilder {
                  * when possible.
                  */
                 Token tokenOp = (Token) op;
-                Input.Token token = tokenOp.getToken();
                 int j = i; // Where to insert toksBefore before.
                 while (0 < j && ops.get(j - 1) instanceof OpenOp) {
                     --j;
@@ -535,104 +581,11 @@ public final class OpsBuilder {
                 while (k + 1 < opsN && ops.get(k + 1) instanceof CloseOp) {
                     ++k;
                 }
-                if (tokenOp.realOrImaginary() == Token.RealOrImaginary.REAL) {
-                    /*
-                     * Regular input token. Copy out toksBefore before token, and toksAfter after it. Insert
-                     * this token's toksBefore at position j.
-                     */
-                    int newlines = 0; // Count of newlines in a row.
-                    boolean space = false; // Do we need an extra space after a previous "/*" comment?
-                    boolean lastWasComment = false; // Was the last thing we output a comment?
-                    boolean allowBlankAfterLastComment = false;
-                    for (Input.Tok tokBefore : token.getToksBefore()) {
-                        if (tokBefore.isNewline()) {
-                            newlines++;
-                        } else if (tokBefore.isComment()) {
-                            tokOps.put(
-                                    j,
-                                    Break.make(
-                                            tokBefore.isSlashSlashComment() ? FillMode.FORCED : FillMode.UNIFIED,
-                                            "",
-                                            tokenOp.getPlusIndentCommentsBefore()));
-                            tokOps.putAll(j, makeComment(tokBefore));
-                            space = tokBefore.isSlashStarComment();
-                            newlines = 0;
-                            lastWasComment = true;
-                            if (tokBefore.isJavadocComment()) {
-                                tokOps.put(j, Break.makeForced());
-                            }
-                            allowBlankAfterLastComment = tokBefore.isSlashSlashComment()
-                                    || (tokBefore.isSlashStarComment() && !tokBefore.isJavadocComment());
-                        }
-                    }
-                    if (allowBlankAfterLastComment && newlines > 1) {
-                        // Force a line break after two newlines in a row following a line or block comment
-                        inputMetadataBuilder.blankLine(token.getTok().getIndex(), BlankLineWanted.YES);
-                    }
-                    if (lastWasComment && newlines > 0) {
-                        tokOps.put(j, Break.makeForced());
-                    } else if (space) {
-                        tokOps.put(j, SPACE);
-                    }
-                    // Now we've seen the Token; output the toksAfter.
-
-                    // Reordering of NON-NLS comments that might follow a `+` in a chain of string concatenations, in
-                    // order to move the comments before the Break that precedes the `+` token.
-                    boolean nonNlsCommentsAfterPlus =
-                            token.getToksAfter().stream().anyMatch(OpsBuilder::isNonNlsComment)
-                                    && token.getTok().getText().equals("+")
-                                    && k > 0
-                                    && ops.get(k - 1) instanceof Break;
-
-                    int tokAfterPos = nonNlsCommentsAfterPlus ? k - 1 : k + 1;
-
-                    for (Input.Tok tokAfter : token.getToksAfter()) {
-                        if (tokAfter.isComment()) {
-                            boolean breakAfter = tokAfter.isJavadocComment()
-                                    || (tokAfter.isSlashStarComment()
-                                            && tokenOp.breakAndIndentTrailingComment()
-                                                    .isPresent());
-                            if (breakAfter) {
-                                tokOps.put(
-                                        tokAfterPos,
-                                        Break.make(
-                                                FillMode.FORCED,
-                                                "",
-                                                tokenOp.breakAndIndentTrailingComment()
-                                                        .orElse(Const.ZERO)));
-                            } else {
-                                tokOps.put(tokAfterPos, SPACE);
-                            }
-                            tokOps.putAll(tokAfterPos, makeComment(tokAfter));
-                            if (breakAfter) {
-                                tokOps.put(tokAfterPos, Break.make(FillMode.FORCED, "", ZERO));
-                            }
-                        }
-                    }
-                } else {
-                    /*
-                     * This input token was mistakenly not generated for output. As no whitespace or comments
-                     * were generated (presumably), copy all input non-tokens literally, even spaces and
-                     * newlines.
-                     */
-                    int newlines = 0;
-                    boolean lastWasComment = false;
-                    for (Input.Tok tokBefore : token.getToksBefore()) {
-                        if (tokBefore.isNewline()) {
-                            newlines++;
-                        } else if (tokBefore.isComment()) {
-                            newlines = 0;
-                            lastWasComment = tokBefore.isComment();
-                        }
-                        if (lastWasComment && newlines > 0) {
-                            tokOps.put(j, Break.makeForced());
-                        }
-                        tokOps.put(j, Comment.make(tokBefore));
-                    }
-                    for (Input.Tok tokAfter : token.getToksAfter()) {
-                        tokOps.put(k + 1, Comment.make(tokAfter));
-                    }
-                }
+                addToksBefore(tokenOp, tokOps.get(j));
+                int tokAfterPos = hasNonNlsCommentsAfterPlus(tokenOp) && k > 0 && ops.get(k - 1) instanceof Break
+                        ? k - 1
+                        : k + 1;
+                addToksAfter(tokenOp, tokOps.get(tokAfterPos));
             }
         }
         /*
@@ -640,45 +593,273 @@ public final class OpsBuilder {
          * before a space, suppress the space.
          */
         ImmutableList.Builder<Op> newOps = ImmutableList.builder();
-        boolean afterForcedBreak = false; // Was the last Op a forced break? If so, suppress spaces.
+        Splicer splicer = new Splicer(newOps::add);
         for (int i = 0; i < opsN; i++) {
-            for (Op op : tokOps.get(i)) {
+            splicer.insertedAll(tokOps.get(i));
+            splicer.original(ops.get(i));
+        }
+        splicer.insertedAll(tokOps.get(opsN));
+        return newOps.build();
+    }
+
+    /**
+     * Adds the ops for the non-tokens before a token, which go before the open ops that precede it.
+     *
+     * @param tokenOp the token
+     * @param out the ops to insert before the token
+     */
+    private void addToksBefore(Token tokenOp, List<Op> out) {
+        Input.Token token = tokenOp.getToken();
+        if (tokenOp.realOrImaginary() == Token.RealOrImaginary.REAL) {
+            /*
+             * Regular input token. Copy out toksBefore before token, and toksAfter after it. Insert
+             * this token's toksBefore at position j.
+             */
+            int newlines = 0; // Count of newlines in a row.
+            boolean space = false; // Do we need an extra space after a previous "/*" comment?
+            boolean lastWasComment = false; // Was the last thing we output a comment?
+            boolean allowBlankAfterLastComment = false;
+            for (Input.Tok tokBefore : token.getToksBefore()) {
+                if (tokBefore.isNewline()) {
+                    newlines++;
+                } else if (tokBefore.isComment()) {
+                    out.add(Break.make(
+                            tokBefore.isSlashSlashComment() ? FillMode.FORCED : FillMode.UNIFIED,
+                            "",
+                            tokenOp.getPlusIndentCommentsBefore()));
+                    out.addAll(makeComment(tokBefore));
+                    space = tokBefore.isSlashStarComment();
+                    newlines = 0;
+                    lastWasComment = true;
+                    if (tokBefore.isJavadocComment()) {
+                        out.add(Break.makeForced());
+                    }
+                    allowBlankAfterLastComment = tokBefore.isSlashSlashComment()
+                            || (tokBefore.isSlashStarComment() && !tokBefore.isJavadocComment());
+                }
+            }
+            if (allowBlankAfterLastComment && newlines > 1) {
+                // Force a line break after two newlines in a row following a line or block comment
+                blankLinesAfterComments.add(token.getTok().getIndex());
+            }
+            if (lastWasComment && newlines > 0) {
+                out.add(Break.makeForced());
+            } else if (space) {
+                out.add(SPACE);
+            }
+        } else {
+            /*
+             * This input token was mistakenly not generated for output. As no whitespace or comments
+             * were generated (presumably), copy all input non-tokens literally, even spaces and
+             * newlines.
+             */
+            int newlines = 0;
+            boolean lastWasComment = false;
+            for (Input.Tok tokBefore : token.getToksBefore()) {
+                if (tokBefore.isNewline()) {
+                    newlines++;
+                } else if (tokBefore.isComment()) {
+                    newlines = 0;
+                    lastWasComment = tokBefore.isComment();
+                }
+                if (lastWasComment && newlines > 0) {
+                    out.add(Break.makeForced());
+                }
+                out.add(Comment.make(tokBefore));
+            }
+        }
+    }
+
+    /**
+     * Adds the ops for the non-tokens after a token, which go after the close ops that follow it, or before the break
+     * that precedes it, see {@link #hasNonNlsCommentsAfterPlus}.
+     *
+     * @param tokenOp the token
+     * @param out the ops to insert after the token
+     */
+    private static void addToksAfter(Token tokenOp, List<Op> out) {
+        Input.Token token = tokenOp.getToken();
+        if (tokenOp.realOrImaginary() == Token.RealOrImaginary.REAL) {
+            for (Input.Tok tokAfter : token.getToksAfter()) {
+                if (tokAfter.isComment()) {
+                    boolean breakAfter = tokAfter.isJavadocComment()
+                            || (tokAfter.isSlashStarComment()
+                                    && tokenOp.breakAndIndentTrailingComment().isPresent());
+                    if (breakAfter) {
+                        out.add(Break.make(
+                                FillMode.FORCED,
+                                "",
+                                tokenOp.breakAndIndentTrailingComment().orElse(Const.ZERO)));
+                    } else {
+                        out.add(SPACE);
+                    }
+                    out.addAll(makeComment(tokAfter));
+                    if (breakAfter) {
+                        out.add(Break.make(FillMode.FORCED, "", ZERO));
+                    }
+                }
+            }
+        } else {
+            for (Input.Tok tokAfter : token.getToksAfter()) {
+                out.add(Comment.make(tokAfter));
+            }
+        }
+    }
+
+    /**
+     * Reordering of NON-NLS comments that might follow a `+` in a chain of string concatenations, in order to move the
+     * comments before the Break that precedes the `+` token, if there is one right before it.
+     */
+    private static boolean hasNonNlsCommentsAfterPlus(Token tokenOp) {
+        Input.Token token = tokenOp.getToken();
+        return tokenOp.realOrImaginary() == Token.RealOrImaginary.REAL
+                && token.getToksAfter().stream().anyMatch(OpsBuilder::isNonNlsComment)
+                && token.getTok().getText().equals("+");
+    }
+
+    private static boolean isNonNlsComment(Input.Tok tokAfter) {
+        return tokAfter.isSlashSlashComment() && tokAfter.getText().contains("$NON-NLS");
+    }
+
+    private static boolean isForcedBreak(Op op) {
+        return op instanceof Break && ((Break) op).isForced();
+    }
+
+    /**
+     * Passes on the ops with the comments spliced in among them. Spaces right after a forced break are suppressed, as
+     * are spaces that the comments are inserted before.
+     */
+    private static final class Splicer {
+        private final Consumer<Op> out;
+        private boolean afterForcedBreak = false; // Was the last Op a forced break? If so, suppress spaces.
+
+        Splicer(Consumer<Op> out) {
+            this.out = out;
+        }
+
+        void insertedAll(List<Op> inserted) {
+            for (Op op : inserted) {
                 if (!(afterForcedBreak && op instanceof NonBreakingSpace)) {
-                    newOps.add(op);
+                    out.accept(op);
                     afterForcedBreak = isForcedBreak(op);
                 }
             }
-            Op op = ops.get(i);
+        }
+
+        void original(Op op) {
             if (afterForcedBreak
                     && (op instanceof NonBreakingSpace
                             || (op instanceof Break
                                     && ((Break) op).evalPlusIndent(State.startingState()) == 0
                                     && " ".equals(((Doc) op).getFlat())))) {
-                continue;
+                return;
             }
-            newOps.add(op);
+            out.accept(op);
             if (!(op instanceof OpenOp)) {
                 afterForcedBreak = isForcedBreak(op);
             }
         }
-        for (Op op : tokOps.get(opsN)) {
-            if (!(afterForcedBreak && op instanceof NonBreakingSpace)) {
-                newOps.add(op);
-                afterForcedBreak = isForcedBreak(op);
+    }
+
+    /**
+     * Inserts the comments of the tokens as the ops are added, the same as {@link #insertComments} does for the whole
+     * list, and passes on the ops to a {@link DocBuilder} as soon as nothing more can be inserted before them. The
+     * comments before a token go before the open ops that precede it, so a run of open ops is held back until the op
+     * after it. The comments after a token go after the close ops that follow it, so they wait for the op after those,
+     * and a break is held back until the op after it, in case that is a {@code +} whose NON-NLS comments go before the
+     * break.
+     */
+    private final class OpStream {
+        private final Splicer splicer;
+        /** The ops that are not passed on yet, the first of which is op number {@link #passedOn}. */
+        private final List<Op> window = new ArrayList<>();
+        /** The comment ops to insert before each op in the window, and before the next op. */
+        private final List<List<Op>> inserted = new ArrayList<>();
+        /** The number of ops that were passed on. */
+        private int passedOn = 0;
+        /** The last token, if the ops after its comments go before are not known yet. */
+        @Nullable
+        private Token pendingToken;
+        /** The number of the pending token. */
+        private int pendingTokenI;
+
+        OpStream(DocBuilder docBuilder) {
+            this.splicer = new Splicer(op -> op.add(docBuilder));
+            inserted.add(new ArrayList<>());
+        }
+
+        void add(Op op) {
+            if (!(op instanceof CloseOp)) {
+                insertToksAfterPendingToken();
             }
+            if (op instanceof Token) {
+                Token tokenOp = (Token) op;
+                addToksBefore(tokenOp, inserted.get(openOpsStart()));
+                pendingToken = tokenOp;
+                pendingTokenI = passedOn + window.size();
+            }
+            window.add(op);
+            inserted.add(new ArrayList<>());
+            passOn(heldBackStart());
         }
-        return ImmutableOpsOutput.builder()
-                .ops(newOps.build())
-                .inputMetadata(inputMetadataBuilder.build())
-                .build();
-    }
 
-    private static boolean isNonNlsComment(Input.Tok tokAfter) {
-        return tokAfter.isSlashSlashComment() && tokAfter.getText().contains("$NON-NLS");
-    }
+        void finish() {
+            insertToksAfterPendingToken();
+            passOn(window.size());
+            splicer.insertedAll(inserted.get(0));
+        }
 
-    private static boolean isForcedBreak(Op op) {
-        return op instanceof Break && ((Break) op).isForced();
+        /** Inserts the comments after the pending token, before the next op, which is not a {@link CloseOp}. */
+        private void insertToksAfterPendingToken() {
+            Token tokenOp = pendingToken;
+            if (tokenOp == null) {
+                return;
+            }
+            int next = passedOn + window.size();
+            boolean beforeBreak =
+                    hasNonNlsCommentsAfterPlus(tokenOp) && next - 1 == pendingTokenI && isBreakBefore(pendingTokenI);
+            addToksAfter(tokenOp, inserted.get((beforeBreak ? pendingTokenI - 1 : next) - passedOn));
+            pendingToken = null;
+        }
+
+        /** Returns the index in the window of the run of {@link OpenOp}s at its end. */
+        private int openOpsStart() {
+            int j = window.size();
+            while (0 < j && window.get(j - 1) instanceof OpenOp) {
+                --j;
+            }
+            return j;
+        }
+
+        /** Returns the index in the window of the first op that comments can still be inserted before. */
+        private int heldBackStart() {
+            int start = openOpsStart();
+            if (!window.isEmpty() && window.get(window.size() - 1) instanceof Break) {
+                start = Math.min(start, window.size() - 1);
+            }
+            if (pendingToken != null && hasNonNlsCommentsAfterPlus(pendingToken) && isBreakBefore(pendingTokenI)) {
+                start = Math.min(start, pendingTokenI - 1 - passedOn);
+            }
+            return start;
+        }
+
+        private boolean isBreakBefore(int i) {
+            return i - 1 >= passedOn && window.get(i - 1 - passedOn) instanceof Break;
+        }
+
+        /** Passes on the first {@code n} ops in the window, each after the comments inserted before it. */
+        private void passOn(int n) {
+            if (n <= 0) {
+                return;
+            }
+            for (int i = 0; i < n; i++) {
+                splicer.insertedAll(inserted.get(i));
+                splicer.original(window.get(i));
+            }
+            window.subList(0, n).clear();
+            inserted.subList(0, n).clear();
+            passedOn += n;
+        }
     }
 
     private static List<Op> makeComment(Input.Tok comment) {
@@ -692,6 +873,7 @@ public final class OpsBuilder {
         return MoreObjects.toStringHelper(this)
                 .add("input", input)
                 .add("ops", ops)
+                .add("stream", stream != null)
                 .add("tokenI", tokenI)
                 .add("inputPosition", inputPosition)
                 .toString();
@@ -18,7 +18,6 @@ package com.palantir.javaformat;
 
 import static java.util.Comparator.comparing;
 
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import com.google.common.collect.TreeRangeSet;
@@ -46,17 +45,17 @@ public final class Utils {
 
     /** Converts zero-indexed, [closed, open) line ranges in the given source file to character ranges. */
     public static RangeSet<Integer> lineRangesToCharRanges(String input, RangeSet<Integer> lineRanges) {
-        List<Integer> lines = new ArrayList<>();
-        Iterators.addAll(lines, Newlines.lineOffsetIterator(input));
-        lines.add(input.length() + 1);
+        LineIndex lines = LineIndex.of(input);
 
         final RangeSet<Integer> characterRanges = TreeRangeSet.create();
         for (Range<Integer> lineRange :
-                lineRanges.subRangeSet(Range.closedOpen(0, lines.size() - 1)).asRanges()) {
-            int lineStart = lines.get(lineRange.lowerEndpoint());
+                lineRanges.subRangeSet(Range.closedOpen(0, lines.lineCount())).asRanges()) {
+            int lineStart = lines.lineStart(lineRange.lowerEndpoint());
             // Exclude the trailing newline. This isn't strictly necessary, but handling blank lines
             // as empty ranges is convenient.
-            int lineEnd = lines.get(lineRange.upperEndpoint()) - 1;
+            int lineEnd = lineRange.upperEndpoint() < lines.lineCount()
+                    ? lines.lineStart(lineRange.upperEndpoint()) - 1
+                    : input.length();
             Range<Integer> range = Range.closedOpen(lineStart, lineEnd);
             characterRanges.add(range);
         }
@@ -115,13 +115,13 @@ public abstract class Break extends Doc implements Op {
     }
 
     @Override
-    protected float computeWidth() {
-        return isForced() ? Float.POSITIVE_INFINITY : (float) flat().length();
+    protected int computeWidth() {
+        return isForced() ? INFINITE_WIDTH : flat().length();
     }
 
     @Override
-    protected String computeFlat() {
-        return flat();
+    protected void appendFlat(StringBuilder builder) {
+        builder.append(flat());
     }
 
     @Override
@@ -45,30 +45,39 @@ public final class Comment extends Doc implements Op {
         return new Comment(tok);
     }
 
+    Input.Tok getTok() {
+        return tok;
+    }
+
     @Override
     public void add(DocBuilder builder) {
         builder.add(this);
     }
 
     @Override
-    protected float computeWidth() {
+    protected int computeWidth() {
         int idx = Newlines.firstBreak(tok.getOriginalText());
         // only count the first line of multi-line block comments
         if (tok.isComment()) {
             if (idx > 0) {
                 return idx;
             } else if (tok.isSlashSlashComment() && !tok.getOriginalText().startsWith("// ")) {
-                // Account for line comments with missing spaces, see computeFlat.
+                // Account for line comments with missing spaces, see appendFlat.
                 return tok.length() + 1;
             } else {
                 return tok.length();
             }
         }
-        return idx != -1 ? Float.POSITIVE_INFINITY : (float) tok.length();
+        return idx != -1 ? INFINITE_WIDTH : tok.length();
     }
 
     @Override
-    protected String computeFlat() {
+    protected void appendFlat(StringBuilder builder) {
+        builder.append(flat());
+    }
+
+    /** The flat text of this comment, which is the original text unless a line comment is missing its space. */
+    String flat() {
         // TODO(cushon): commentsHelper.rewrite doesn't get called for spans that fit in a single
         // line. That's fine for multi-line comment reflowing, but problematic for adding missing
         // spaces in line comments.
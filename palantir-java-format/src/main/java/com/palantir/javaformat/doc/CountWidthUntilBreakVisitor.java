@@ -22,7 +22,7 @@ import java.util.List;
 import java.util.OptionalInt;
 
 /** Count the width of code we definitely want to try fitting on a single line. */
-class CountWidthUntilBreakVisitor implements DocVisitor<Float> {
+class CountWidthUntilBreakVisitor implements IntDocVisitor {
     private final int availableWidth;
 
     /**
@@ -34,27 +34,27 @@ class CountWidthUntilBreakVisitor implements DocVisitor<Float> {
     }
 
     @Override
-    public Float visitSpace(NonBreakingSpace doc) {
+    public int visitSpace(NonBreakingSpace doc) {
         return doc.getWidth();
     }
 
     @Override
-    public Float visitComment(Comment doc) {
+    public int visitComment(Comment doc) {
         return doc.getWidth();
     }
 
     @Override
-    public Float visitToken(Token doc) {
+    public int visitToken(Token doc) {
         return doc.getWidth();
     }
 
     @Override
-    public Float visitBreak(Break doc) {
+    public int visitBreak(Break doc) {
         return doc.getWidth();
     }
 
     @Override
-    public Float visitLevel(Level level) {
+    public int visitLevel(Level level) {
         if (level.partialInlineability() == PartialInlineability.IF_FIRST_LEVEL_FITS
                 // If this prefix wouldn't fit on a new line (within the availableWidth), then don't
                 // consider it at all, because there's no point, it would always be broken.
@@ -75,7 +75,7 @@ class CountWidthUntilBreakVisitor implements DocVisitor<Float> {
                     level.representation(State.startingState())));
         }
 
-        return 0f;
+        return 0;
     }
 
     /**
@@ -16,7 +16,6 @@
 
 package com.palantir.javaformat.doc;
 
-import com.google.common.base.Suppliers;
 import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.Range;
 import com.palantir.javaformat.CommentsHelper;
@@ -37,54 +36,87 @@ public abstract class Doc extends HasUniqueId {
     static final Range<Integer> EMPTY_RANGE = Range.closedOpen(-1, -1);
     static final DiscreteDomain<Integer> INTEGERS = DiscreteDomain.integers();
 
+    /** The width of a {@code Doc} that must be broken. Sums of widths stay at this value, see {@link #addWidths}. */
+    static final int INFINITE_WIDTH = Integer.MAX_VALUE;
+
+    /*
+     * The width and the range of input tokens, set by measure(). DocBuilder#build measures the whole tree bottom-up, so
+     * that there is no memoizing wrapper per doc, and the range is kept as primitive token indexes.
+     */
     @SuppressWarnings("Immutable") // Effectively immutable
-    private final ImmutableSupplier<Float> memoizedWidth = Suppliers.memoize(this::computeWidth)::get;
+    private boolean measured;
 
     @SuppressWarnings("Immutable") // Effectively immutable
-    private final ImmutableSupplier<String> memoizedFlat = Suppliers.memoize(this::computeFlat)::get;
+    private int width;
 
     @SuppressWarnings("Immutable") // Effectively immutable
-    private final ImmutableSupplier<Range<Integer>> memoizedRange = Suppliers.memoize(this::computeRange)::get;
+    private int rangeStart = -1;
+
+    @SuppressWarnings("Immutable") // Effectively immutable
+    private int rangeEnd = -1;
 
     /**
-     * Return the width of a {@code Doc}, or {@code Float.POSITIVE_INFINITY} if it must be broken.
+     * Return the width of a {@code Doc}, or {@link #INFINITE_WIDTH} if it must be broken.
      *
      * @return the width
      */
-    final float getWidth() {
-        return memoizedWidth.get();
+    final int getWidth() {
+        measure();
+        return width;
     }
 
     /**
      * Return a {@code Doc}'s flat-string value; not defined (and never called) if the {@code Doc} contains forced
-     * breaks.
+     * breaks. This is not memoized, as it is only needed where the text is written out.
      *
      * @return the flat-string value
      */
     public final String getFlat() {
-        return memoizedFlat.get();
+        StringBuilder builder = new StringBuilder();
+        appendFlat(builder);
+        return builder.toString();
     }
 
     final Range<Integer> range() {
-        return memoizedRange.get();
+        measure();
+        return rangeStart < 0 ? EMPTY_RANGE : Range.closedOpen(rangeStart, rangeEnd);
+    }
+
+    /** Computes the width and range of this {@code Doc} and the {@code Doc}s inside it, unless already done. */
+    final void measure() {
+        if (!measured) {
+            width = computeWidth();
+            Range<Integer> range = computeRange();
+            if (!range.isEmpty()) {
+                rangeStart = range.lowerEndpoint();
+                rangeEnd = range.upperEndpoint();
+            }
+            measured = true;
+        }
     }
 
     /**
      * Compute the {@code Doc}'s width.
      *
-     * @return the width, or {@code Float.POSITIVE_INFINITY} if it must be broken
+     * @return the width, or {@link #INFINITE_WIDTH} if it must be broken
      */
-    protected abstract float computeWidth();
+    protected abstract int computeWidth();
+
+    /** Adds two widths or columns, either of which may be {@link #INFINITE_WIDTH}. */
+    static int addWidths(int width1, int width2) {
+        return width1 == INFINITE_WIDTH || width2 == INFINITE_WIDTH ? INFINITE_WIDTH : width1 + width2;
+    }
 
     /**
-     * Compute the {@code Doc}'s flat value. Not defined (and never called) if contains forced breaks.
+     * Append the {@code Doc}'s flat value to {@code builder}. Not defined (and never called) if contains forced
+     * breaks.
      *
-     * @return the flat value
+     * @param builder the builder to append to
      */
-    protected abstract String computeFlat();
+    protected abstract void appendFlat(StringBuilder builder);
 
     /**
-     * Compute the {@code Doc}'s {@link Range} of {@link Input.Token}s.
+     * Compute the {@code Doc}'s {@link Range} of {@link Input.Token}s, as a closed-open range.
      *
      * @return the {@link Range}
      */
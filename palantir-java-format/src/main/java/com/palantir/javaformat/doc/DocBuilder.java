@@ -97,11 +97,12 @@ public final class DocBuilder {
     }
 
     /**
-     * Return the {@link Doc}.
+     * Return the {@link Doc}, with the widths and ranges of all of its {@link Doc}s computed in one bottom-up pass.
      *
      * @return the {@link Doc}
      */
     public Level build() {
+        base.measure();
         return base;
     }
 
@@ -16,24 +16,81 @@
 package com.palantir.javaformat.doc;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
-import fj.Ord;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
 
 /**
- * This class exists in order to provide a stable {@link Ord} implementation for {@link Doc} and {@link BreakTag}, so
- * that we can store them inside ordered immutable types like {@link fj.data.Set} and {@link fj.data.HashMap}.
+ * Gives {@link Doc}s, {@link BreakTag}s and the nodes of {@link Obs} a stable identifier, which is used to index the
+ * {@link StateTables} and to refer to them in the debugger output.
+ *
+ * <p>Objects that are created during a {@link #startRun format run} get ids that are dense from zero and unique within
+ * the run. They are allocated from a counter that belongs to the run, so formatter threads do not contend on a shared
+ * counter, and ids do not grow over the lifetime of the process. Objects that are created outside of a run get unique
+ * negative ids instead. Objects that outlive a run, such as constants, must be created with {@link #unscoped}, or their
+ * id would collide with the ids of later runs.
  */
 public abstract class HasUniqueId {
-    private static final AtomicInteger UNIQUE_ID_GENERATOR = new AtomicInteger();
+    private static final AtomicInteger UNSCOPED_IDS = new AtomicInteger();
+
+    /** The next id of the run on the current thread, if there is one. */
+    private static final ThreadLocal<int[]> RUN_IDS = new ThreadLocal<>();
 
-    private final int uniqueId = UNIQUE_ID_GENERATOR.incrementAndGet();
+    private final int uniqueId = nextId();
 
     @JsonProperty("id")
     public final int id() {
         return uniqueId;
     }
 
-    static <D extends HasUniqueId> Ord<D> ord() {
-        return Ord.on((D obj) -> obj.id(), Ord.intOrd).ord();
+    /**
+     * Starts a format run on the current thread, which lasts until the returned {@link Run} is closed. Runs can be
+     * nested, in which case the outer run continues when the inner one is closed. All the objects of a run must be
+     * created on the thread that started it.
+     */
+    public static Run startRun() {
+        Run run = new Run(RUN_IDS.get());
+        RUN_IDS.set(new int[1]);
+        return run;
+    }
+
+    /** Creates objects outside of any run on the current thread, so they get unique negative ids. */
+    public static <T> T unscoped(Supplier<T> factory) {
+        int[] runIds = RUN_IDS.get();
+        RUN_IDS.remove();
+        try {
+            return factory.get();
+        } finally {
+            if (runIds != null) {
+                RUN_IDS.set(runIds);
+            }
+        }
+    }
+
+    private static int nextId() {
+        int[] runIds = RUN_IDS.get();
+        if (runIds == null) {
+            return UNSCOPED_IDS.decrementAndGet();
+        }
+        return runIds[0]++;
+    }
+
+    /** A format run, see {@link #startRun}. */
+    public static final class Run implements AutoCloseable {
+        @Nullable
+        private final int[] outerRunIds;
+
+        private Run(@Nullable int[] outerRunIds) {
+            this.outerRunIds = outerRunIds;
+        }
+
+        @Override
+        public void close() {
+            if (outerRunIds == null) {
+                RUN_IDS.remove();
+            } else {
+                RUN_IDS.set(outerRunIds);
+            }
+        }
     }
 }
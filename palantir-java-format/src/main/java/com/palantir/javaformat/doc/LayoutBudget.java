@@ -0,0 +1,117 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.doc;
+
+import com.palantir.javaformat.java.CancellationToken;
+import com.palantir.javaformat.java.FormatBudget;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks how much of its {@link FormatBudget} a format run has used. Every exploration of {@link Obs.LevelNode} counts
+ * against the budget, and once it is used up, {@link Obs.LevelNode#maybeExplore} stops trying alternative layouts, so
+ * that every level that is left is broken normally. The explorations that a layout cannot do without are still
+ * carried out.
+ *
+ * <p>The run can also be cancelled outright through its {@link CancellationToken}, which {@link Level#computeBreaks}
+ * checks for every level.
+ *
+ * <p>Thread-safe, as the levels that are laid out in the background check the cancellation of their run. They are
+ * only laid out in the background when the budget is unlimited, so that a limited budget is spent in the same order
+ * on every run.
+ */
+public final class LayoutBudget {
+    private static final Duration MAX_TIME_LIMIT = Duration.ofDays(365);
+    private static final LayoutBudget UNLIMITED =
+            new LayoutBudget(false, Long.MAX_VALUE, false, 0, CancellationToken.never());
+
+    private final boolean limited;
+    private final long explorationLimit;
+    private final boolean timed;
+    private final long deadlineNanos;
+    private final AtomicLong explorations = new AtomicLong();
+    private final CancellationToken cancellationToken;
+    private volatile boolean exhausted;
+
+    private LayoutBudget(
+            boolean limited,
+            long explorationLimit,
+            boolean timed,
+            long deadlineNanos,
+            CancellationToken cancellationToken) {
+        this.limited = limited;
+        this.explorationLimit = explorationLimit;
+        this.timed = timed;
+        this.deadlineNanos = deadlineNanos;
+        this.cancellationToken = cancellationToken;
+    }
+
+    public static LayoutBudget unlimited() {
+        return UNLIMITED;
+    }
+
+    /** Starts spending {@code budget}, whose time limit is counted from now, until {@code cancellationToken} fires. */
+    public static LayoutBudget start(FormatBudget budget, CancellationToken cancellationToken) {
+        if (budget.isUnlimited()) {
+            return new LayoutBudget(false, Long.MAX_VALUE, false, 0, cancellationToken);
+        }
+        // Longer limits could overflow in nanoseconds, and are far beyond any format run anyway.
+        long timeLimitNanos = budget.timeLimit()
+                .map(timeLimit -> timeLimit.compareTo(MAX_TIME_LIMIT) < 0 ? timeLimit : MAX_TIME_LIMIT)
+                .map(Duration::toNanos)
+                .orElse(0L);
+        return new LayoutBudget(
+                true,
+                budget.explorationLimit().orElse(Long.MAX_VALUE),
+                budget.timeLimit().isPresent(),
+                System.nanoTime() + timeLimitNanos,
+                cancellationToken);
+    }
+
+    /** Whether the budget ran out, in which case some levels were broken without trying their alternatives. */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    /** Throws a {@link java.util.concurrent.CancellationException} if the run was cancelled. */
+    void checkCancelled() {
+        cancellationToken.throwIfCancelled();
+    }
+
+    /** Counts an exploration that has to be carried out whatever the budget. */
+    void spend() {
+        if (limited) {
+            explorations.incrementAndGet();
+        }
+    }
+
+    /** Counts an exploration of an alternative layout, returning whether there was budget left to carry it out. */
+    boolean trySpend() {
+        if (!limited) {
+            return true;
+        }
+        if (exhausted) {
+            return false;
+        }
+        if (explorations.incrementAndGet() > explorationLimit
+                || (timed && System.nanoTime() - deadlineNanos > 0)) {
+            exhausted = true;
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.doc;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.palantir.javaformat.Input;
+import com.palantir.javaformat.doc.LayoutMemo.Key;
+import com.palantir.javaformat.doc.LayoutMemo.Layout;
+import com.palantir.javaformat.doc.StateTables.Table;
+import com.palantir.javaformat.doc.StateTables.Writes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Carries the layouts of large levels over from one format run to the next, for when the same file is formatted again
+ * after an edit, as IDEs do. Every run builds a new {@link Doc} tree, so levels are matched by a fingerprint of their
+ * structure: the kinds, texts and options of the docs in them, with the docs and {@link BreakTag}s numbered in the
+ * order that they are first reached. Levels with the same fingerprint lay out the same from equal {@link LayoutMemo}
+ * keys, so after an edit only the levels that contain it are laid out again, and the layouts of the other members of
+ * the class are replayed.
+ *
+ * <p>Only the layouts that the previous run made or used are kept, which bounds the memory to that of one run.
+ * Fingerprinting walks the whole level, so only levels with at least {@link #MIN_DOCS} docs are cached.
+ *
+ * <p>Not thread-safe: runs that share a cache must not overlap.
+ */
+public final class LayoutCache {
+    private static final int MIN_DOCS = 256;
+
+    private Map<HashCode, Map<Key, CachedLayout>> previousRun = new HashMap<>();
+    private Map<HashCode, Map<Key, CachedLayout>> currentRun = new HashMap<>();
+
+    void startRun() {
+        previousRun = currentRun;
+        currentRun = new HashMap<>();
+    }
+
+    static boolean isWorthCaching(int docs) {
+        return docs >= MIN_DOCS;
+    }
+
+    /** Returns the layout of a level with this {@code shape}, from a state with this {@code key}, if it is known. */
+    @Nullable
+    Layout get(Shape shape, Key key) {
+        CachedLayout cached = get(currentRun, shape, key);
+        if (cached == null) {
+            cached = get(previousRun, shape, key);
+            if (cached == null) {
+                return null;
+            }
+            put(shape, key, cached);
+        }
+        return cached.toLayout(shape);
+    }
+
+    void put(Shape shape, Key key, Layout layout) {
+        CachedLayout cached = CachedLayout.of(shape, layout);
+        if (cached != null) {
+            put(shape, key, cached);
+        }
+    }
+
+    private void put(Shape shape, Key key, CachedLayout cached) {
+        currentRun.computeIfAbsent(shape.fingerprint, _fingerprint -> new HashMap<>()).put(key, cached);
+    }
+
+    @Nullable
+    private static CachedLayout get(Map<HashCode, Map<Key, CachedLayout>> run, Shape shape, Key key) {
+        Map<Key, CachedLayout> layouts = run.get(shape.fingerprint);
+        return layouts == null ? null : layouts.get(key);
+    }
+
+    /** The fingerprint of a level, and the numbering of the docs and tags in it. */
+    static final class Shape {
+        private final List<HasUniqueId> objects = new ArrayList<>();
+        private final Map<HasUniqueId, Integer> indexes = new IdentityHashMap<>();
+        private final HashCode fingerprint;
+
+        Shape(Level level) {
+            Hasher hasher = Hashing.murmur3_128().newHasher();
+            add(hasher, level);
+            this.fingerprint = hasher.hash();
+        }
+
+        private int index(HasUniqueId object) {
+            Integer index = indexes.get(object);
+            if (index == null) {
+                index = objects.size();
+                objects.add(object);
+                indexes.put(object, index);
+            }
+            return index;
+        }
+
+        private void add(Hasher hasher, Doc doc) {
+            index(doc);
+            hasher.putInt(doc.getWidth());
+            if (doc instanceof Level) {
+                Level level = (Level) doc;
+                hasher.putByte((byte) 'L');
+                level.getPlusIndent().fingerprint(hasher, this::index);
+                hasher.putString(level.getBreakBehaviour().toString(), UTF_8)
+                        .putInt(level.getBreakabilityIfLastLevel().ordinal())
+                        .putInt(level.partialInlineability().ordinal())
+                        .putInt(level.getOpenOp().complexity().ordinal())
+                        .putInt(level.getColumnLimitBeforeLastBreak().orElse(-1))
+                        .putInt(level.getDocs().size());
+                for (Doc inner : level.getDocs()) {
+                    add(hasher, inner);
+                }
+            } else if (doc instanceof Break) {
+                Break brk = (Break) doc;
+                hasher.putByte((byte) 'B')
+                        .putInt(brk.fillMode().ordinal())
+                        .putString(brk.flat(), UTF_8)
+                        .putBoolean(brk.hasColumnLimit())
+                        .putInt(brk.optTag().map(this::index).orElse(-1));
+                brk.plusIndent().fingerprint(hasher, this::index);
+            } else if (doc instanceof Token) {
+                hasher.putByte((byte) 'T').putString(((Token) doc).getToken().getTok().getOriginalText(), UTF_8);
+            } else if (doc instanceof Comment) {
+                Input.Tok tok = ((Comment) doc).getTok();
+                hasher.putByte((byte) 'C')
+                        .putString(tok.getOriginalText(), UTF_8)
+                        .putBoolean(tok.isComment())
+                        .putBoolean(tok.isSlashSlashComment())
+                        .putBoolean(tok.isSlashStarComment())
+                        .putBoolean(tok.isJavadocComment());
+            } else {
+                hasher.putString(doc.getClass().getName(), UTF_8);
+            }
+        }
+    }
+
+    /** A {@link Layout} whose writes refer to docs and tags by their number in the {@link Shape}. */
+    private static final class CachedLayout {
+        private final int column;
+        private final int addedLines;
+        private final Table[] tables;
+        private final int[] indexes;
+        private final Object[] values;
+
+        private CachedLayout(int column, int addedLines, Table[] tables, int[] indexes, Object[] values) {
+            this.column = column;
+            this.addedLines = addedLines;
+            this.tables = tables;
+            this.indexes = indexes;
+            this.values = values;
+        }
+
+        /** Returns the layout in terms of {@code shape}, or null if it writes to anything outside of the level. */
+        @Nullable
+        static CachedLayout of(Shape shape, Layout layout) {
+            Writes writes = layout.writes();
+            Table[] tables = new Table[writes.size()];
+            int[] indexes = new int[writes.size()];
+            Object[] values = new Object[writes.size()];
+            for (int i = 0; i < writes.size(); i++) {
+                Integer index = shape.indexes.get(writes.key(i));
+                if (index == null) {
+                    return null;
+                }
+                tables[i] = writes.table(i);
+                indexes[i] = index;
+                values[i] = writes.value(i);
+            }
+            return new CachedLayout(layout.column(), layout.addedLines(), tables, indexes, values);
+        }
+
+        Layout toLayout(Shape shape) {
+            HasUniqueId[] keys = new HasUniqueId[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                keys[i] = shape.objects.get(indexes[i]);
+            }
+            return new Layout(column, addedLines, new Writes(tables, keys, values));
+        }
+    }
+}
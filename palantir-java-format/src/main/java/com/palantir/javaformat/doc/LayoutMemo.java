@@ -0,0 +1,362 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.doc;
+
+import com.google.common.collect.ImmutableList;
+import com.palantir.javaformat.BreakBehaviour;
+import com.palantir.javaformat.BreakBehaviours;
+import com.palantir.javaformat.CommentsHelper;
+import com.palantir.javaformat.doc.StateTables.Writes;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+
+/**
+ * Memoizes {@link Level#computeBreaks} within a format run. The layout search lays out some levels more than once from
+ * equivalent states, for example the last inner level of a level that is tried both broken and with its last level
+ * inlined, which makes deeply nested code exponentially expensive to format. Only levels that do not fit on one line
+ * are looked up, as checking the fit is cheaper than building a key.
+ *
+ * <p>The layout of a level depends on the incoming column, indents and {@link State#mustBreak()}, on the branching
+ * coefficient up to {@link Level#MAX_BRANCHING_COEFFICIENT}, and on the few facts that it reads from the rest of the
+ * state: whether the {@link BreakTag}s of the breaks and conditional indents inside the level were taken, and whether
+ * the inner levels inspected by {@link BreakBehaviour.Cases#breakOnlyIfInnerLevelsThenFitOnOneLine} fit on one line.
+ * Together with the column limit, those make up the key. The number of lines only matters relative to the incoming
+ * state. A layout is stored as the resulting column, the number of lines it added and the {@link Writes} it made,
+ * and a hit replays those onto the incoming state.
+ *
+ * <p>There is one memo per {@link State#startingState()}, which assumes that all the states derived from it are laid
+ * out with the same {@link CommentsHelper}. Large levels are also looked up in the {@link LayoutCache} of the run, if
+ * it has one.
+ *
+ * <p>Since a layout only depends on its key, it can also be computed ahead of time on another thread, in a state of its
+ * own with the same key, see {@link #layOutInBackground}. Whether a layout comes from there, from the cache or is
+ * computed on the spot, the result is the same. The memo itself is not thread-safe.
+ *
+ * <p>Layouts made after the {@link LayoutBudget} of the run ran out may be worse than those of a full search, so they
+ * are not put in the {@link LayoutCache}.
+ */
+final class LayoutMemo {
+    /** Smaller levels are not worth handing off to another thread. */
+    private static final int MIN_BACKGROUND_DOCS = 512;
+
+    @Nullable
+    private final LayoutCache layoutCache;
+
+    @Nullable
+    private final Executor layoutExecutor;
+
+    private final LayoutBudget budget;
+
+    private final Map<Level, LevelLayouts> levels = new HashMap<>();
+    private final Map<Level, BackgroundLayout> backgroundLayouts = new HashMap<>();
+
+    LayoutMemo(@Nullable LayoutCache layoutCache, @Nullable Executor layoutExecutor, LayoutBudget budget) {
+        this.layoutCache = layoutCache;
+        this.layoutExecutor = layoutExecutor;
+        this.budget = budget;
+    }
+
+    LayoutBudget budget() {
+        return budget;
+    }
+
+    boolean laysOutInBackground() {
+        return layoutExecutor != null;
+    }
+
+    /**
+     * Starts laying out {@code level} from {@code state} in the background, if there is an executor and the level is
+     * large enough, so that {@link #computeIfAbsent} can take the layout if it gets to the level from an equivalent
+     * state.
+     */
+    void layOutInBackground(Level level, int maxWidth, State state, CommentsHelper commentsHelper) {
+        Executor executor = layoutExecutor;
+        if (executor == null || backgroundLayouts.containsKey(level)) {
+            return;
+        }
+        LevelLayouts layouts = levels.computeIfAbsent(level, LevelLayouts::new);
+        Key key = layouts.key(maxWidth, state);
+        if (layouts.docs < MIN_BACKGROUND_DOCS || layouts.layouts.containsKey(key)) {
+            return;
+        }
+        State detached = layouts.detach(state);
+        BackgroundLayout background = new BackgroundLayout(key);
+        backgroundLayouts.put(level, background);
+        executor.execute(() -> background.run(() -> {
+            State result = level.computeBreaks(commentsHelper, maxWidth, detached, Obs.untraced());
+            Writes writes = result.writesSince(detached)
+                    .orElseThrow(() -> new IllegalStateException("Level was laid out in the wrong tables"));
+            return new Layout(result.column(), result.numLines() - detached.numLines(), writes);
+        }));
+    }
+
+    /** Returns the layout of {@code level} from {@code state}, using {@code computeBreaks} if it is not known yet. */
+    State computeIfAbsent(Level level, int maxWidth, State state, Supplier<State> computeBreaks) {
+        LevelLayouts layouts = levels.computeIfAbsent(level, LevelLayouts::new);
+        Key key = layouts.key(maxWidth, state);
+        Layout layout = layouts.layouts.get(key);
+        if (layout != null) {
+            return layout.applyTo(state);
+        }
+        LayoutCache cache = layoutCache;
+        LayoutCache.Shape shape =
+                cache != null && LayoutCache.isWorthCaching(layouts.docs) ? layouts.shape(level) : null;
+        Layout backgroundLayout = takeBackgroundLayout(level, key);
+        if (backgroundLayout != null) {
+            layout = backgroundLayout;
+            if (cache != null && shape != null && !budget.isExhausted()) {
+                cache.put(shape, key, layout);
+            }
+        } else if (cache != null && shape != null) {
+            layout = cache.get(shape, key);
+        }
+        if (layout != null) {
+            layouts.layouts.put(key, layout);
+            return layout.applyTo(state);
+        }
+        State result = computeBreaks.get();
+        Optional<Writes> writes = result.writesSince(state);
+        if (writes.isPresent()) {
+            Layout newLayout = new Layout(result.column(), result.numLines() - state.numLines(), writes.get());
+            layouts.layouts.put(key, newLayout);
+            if (cache != null && shape != null && !budget.isExhausted()) {
+                cache.put(shape, key, newLayout);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the layout of {@code level} that was started in the background from a state with this {@code key}, if
+     * there is one. Waits for it if it is in progress, and takes it over if it has not started yet.
+     */
+    @Nullable
+    private Layout takeBackgroundLayout(Level level, Key key) {
+        BackgroundLayout background = backgroundLayouts.remove(level);
+        if (background == null || background.cancel() || !background.key.equals(key)) {
+            return null;
+        }
+        return background.layout.join();
+    }
+
+    /** A layout that is computed on another thread, unless this thread gets to it first. */
+    private static final class BackgroundLayout {
+        private final Key key;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<Layout> layout = new CompletableFuture<>();
+
+        BackgroundLayout(Key key) {
+            this.key = key;
+        }
+
+        /** Returns true if the layout had not started yet, in which case it never will. */
+        boolean cancel() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        void run(Supplier<Layout> computeLayout) {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                layout.complete(computeLayout.get());
+            } catch (RuntimeException e) {
+                // The formatting thread lays out the level itself, and reports the failure.
+                layout.complete(null);
+            } catch (Error e) {
+                layout.complete(null);
+                throw e;
+            }
+        }
+    }
+
+    private static final class LevelLayouts {
+        private final ImmutableList<BreakTag> tags;
+        private final ImmutableList<Level> innerLevels;
+        private final int docs;
+        private final Map<Key, Layout> layouts = new HashMap<>();
+
+        @Nullable
+        private LayoutCache.Shape shape;
+
+        LevelLayouts(Level level) {
+            Set<BreakTag> tagsRead = new LinkedHashSet<>();
+            Set<Level> innerLevelsRead = new LinkedHashSet<>();
+            this.docs = collectDependencies(level, tagsRead, innerLevelsRead);
+            this.tags = ImmutableList.copyOf(tagsRead);
+            this.innerLevels = ImmutableList.copyOf(innerLevelsRead);
+        }
+
+        LayoutCache.Shape shape(Level level) {
+            LayoutCache.Shape result = shape;
+            if (result == null) {
+                result = new LayoutCache.Shape(level);
+                shape = result;
+            }
+            return result;
+        }
+
+        /** Returns a state in new tables with the same key as {@code state}, see {@link State#detach}. */
+        State detach(State state) {
+            State detached = state.detach();
+            for (BreakTag tag : tags) {
+                if (state.wasBreakTaken(tag)) {
+                    detached = detached.breakTaken(tag, true);
+                }
+            }
+            for (Level innerLevel : innerLevels) {
+                if (state.isOneLine(innerLevel)) {
+                    detached = detached.withLevelState(innerLevel, ImmutableLevelState.of(true));
+                }
+            }
+            return detached;
+        }
+
+        Key key(int maxWidth, State state) {
+            BitSet facts = new BitSet(tags.size() + innerLevels.size());
+            for (int i = 0; i < tags.size(); i++) {
+                facts.set(i, state.wasBreakTaken(tags.get(i)));
+            }
+            for (int i = 0; i < innerLevels.size(); i++) {
+                facts.set(tags.size() + i, state.isOneLine(innerLevels.get(i)));
+            }
+            return new Key(
+                    maxWidth,
+                    state.column(),
+                    state.indent(),
+                    state.lastIndent(),
+                    state.mustBreak(),
+                    Math.min(state.branchingCoefficient(), Level.MAX_BRANCHING_COEFFICIENT),
+                    facts);
+        }
+
+        /**
+         * Collects the tags that laying out {@code level} may read or toggle, and the inner levels whose
+         * {@link State#isOneLine} it may read. Returns the number of docs in the level.
+         */
+        private static int collectDependencies(Level level, Set<BreakTag> tagsRead, Set<Level> innerLevelsRead) {
+            int docs = 1;
+            level.getPlusIndent().forEachCondition(tagsRead::add);
+            boolean readsInnerLevels = BreakBehaviours.caseOf(level.getBreakBehaviour())
+                    .breakOnlyIfInnerLevelsThenFitOnOneLine(_keepIndentWhenInlined -> true)
+                    .otherwise_(false);
+            for (Doc doc : level.getDocs()) {
+                if (doc instanceof Break) {
+                    Break brk = (Break) doc;
+                    brk.optTag().ifPresent(tagsRead::add);
+                    brk.plusIndent().forEachCondition(tagsRead::add);
+                } else if (doc instanceof Level) {
+                    if (readsInnerLevels) {
+                        innerLevelsRead.add((Level) doc);
+                    }
+                    docs += collectDependencies((Level) doc, tagsRead, innerLevelsRead) - 1;
+                }
+                docs++;
+            }
+            return docs;
+        }
+    }
+
+    static final class Key {
+        private final int maxWidth;
+        private final int column;
+        private final int indent;
+        private final int lastIndent;
+        private final boolean mustBreak;
+        private final int branchingCoefficient;
+        private final BitSet facts;
+
+        Key(
+                int maxWidth,
+                int column,
+                int indent,
+                int lastIndent,
+                boolean mustBreak,
+                int branchingCoefficient,
+                BitSet facts) {
+            this.maxWidth = maxWidth;
+            this.column = column;
+            this.indent = indent;
+            this.lastIndent = lastIndent;
+            this.mustBreak = mustBreak;
+            this.branchingCoefficient = branchingCoefficient;
+            this.facts = facts;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) other;
+            return maxWidth == that.maxWidth
+                    && column == that.column
+                    && indent == that.indent
+                    && lastIndent == that.lastIndent
+                    && mustBreak == that.mustBreak
+                    && branchingCoefficient == that.branchingCoefficient
+                    && facts.equals(that.facts);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(maxWidth, column, indent, lastIndent, mustBreak, branchingCoefficient, facts);
+        }
+    }
+
+    /** The resulting column, the number of lines added and the writes made by laying out a level. */
+    static final class Layout {
+        private final int column;
+        private final int addedLines;
+        private final Writes writes;
+
+        Layout(int column, int addedLines, Writes writes) {
+            this.column = column;
+            this.addedLines = addedLines;
+            this.writes = writes;
+        }
+
+        int column() {
+            return column;
+        }
+
+        int addedLines() {
+            return addedLines;
+        }
+
+        Writes writes() {
+            return writes;
+        }
+
+        State applyTo(State state) {
+            return state.replay(writes).withColumn(column).addNewLines(addedLines);
+        }
+    }
+}
@@ -20,7 +20,6 @@ import static com.google.common.collect.Iterables.getLast;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Range;
 import com.palantir.javaformat.BreakBehaviour;
@@ -32,7 +31,6 @@ import com.palantir.javaformat.OpenOp;
 import com.palantir.javaformat.OpenOp.Complexity;
 import com.palantir.javaformat.Output;
 import com.palantir.javaformat.PartialInlineability;
-import com.palantir.javaformat.doc.Obs.Exploration;
 import com.palantir.javaformat.doc.Obs.ExplorationNode;
 import com.palantir.javaformat.doc.Obs.LevelNode;
 import com.palantir.javaformat.doc.StartsWithBreakVisitor.Result;
@@ -47,6 +45,7 @@ import java.util.OptionalInt;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 import org.immutables.value.Value;
 
 /** A {@code Level} inside a {@link Doc}. */
@@ -55,15 +54,25 @@ public final class Level extends Doc {
      * How many branches we are allowed to take (i.e how many times we can consider breaking vs not breaking the current
      * level) before we stop branching and always break, which is the google-java-format default behaviour.
      */
-    private static final int MAX_BRANCHING_COEFFICIENT = 20;
+    static final int MAX_BRANCHING_COEFFICIENT = 20;
+
+    /** Returned by {@link #tryToFitOnOneLine} if the docs do not fit. */
+    private static final int DOES_NOT_FIT = -1;
 
     private static final Collector<Level, ?, Optional<Level>> GET_LAST_COLLECTOR = Collectors.reducing((u, v) -> v);
 
     private final List<Doc> docs = new ArrayList<>(); // The elements of the level.
 
-    @SuppressWarnings("Immutable") // Effectively immutable
-    private final ImmutableSupplier<SplitsBreaks> memoizedSplitsBreaks =
-            Suppliers.memoize(() -> splitByBreaks(docs))::get;
+    /**
+     * Whether the level fits on one line exactly when its width does, which is when neither it nor any level inside it
+     * has a {@link #getColumnLimitBeforeLastBreak()}. Set in the same bottom-up pass as the width.
+     */
+    private boolean widthDecidesFit;
+
+    /** Computed when the level is first laid out broken, as most levels are only ever laid out on one line. */
+    @Nullable
+    private SplitsBreaks splitsBreaks;
+
     /** The immutable characteristics of this level determined before the level contents are available. */
     private final OpenOp openOp;
 
@@ -86,21 +95,24 @@ public final class Level extends Doc {
     }
 
     @Override
-    protected float computeWidth() {
-        float thisWidth = 0.0F;
+    protected int computeWidth() {
+        int width = 0;
+        boolean innerLevelsDecideFitByWidth = true;
         for (Doc doc : docs) {
-            thisWidth += doc.getWidth();
+            width = addWidths(width, doc.getWidth());
+            if (doc instanceof Level && !((Level) doc).widthDecidesFit) {
+                innerLevelsDecideFitByWidth = false;
+            }
         }
-        return thisWidth;
+        widthDecidesFit = innerLevelsDecideFitByWidth && !getColumnLimitBeforeLastBreak().isPresent();
+        return width;
     }
 
     @Override
-    protected String computeFlat() {
-        StringBuilder builder = new StringBuilder();
+    protected void appendFlat(StringBuilder builder) {
         for (Doc doc : docs) {
-            builder.append(doc.getFlat());
+            doc.appendFlat(builder);
         }
-        return builder.toString();
     }
 
     @Override
@@ -114,54 +126,87 @@ public final class Level extends Doc {
 
     @Override
     public State computeBreaks(CommentsHelper commentsHelper, int maxWidth, State state, Obs.ExplorationNode observer) {
-        return tryToFitOnOneLine(maxWidth, state, docs)
-                .map(newWidth -> state.withColumn(newWidth).withLevelState(this, ImmutableLevelState.of(true)))
-                .orElseGet(() -> {
-                    Obs.LevelNode childLevel = observer.newChildNode(this, state);
-                    State newState =
-                            getBreakBehaviour().match(new BreakImpl(commentsHelper, maxWidth, state, childLevel));
+        state.layoutBudget().checkCancelled();
+        int newWidth = tryToFitOnOneLine(maxWidth, state.column());
+        if (newWidth != DOES_NOT_FIT) {
+            return state.withColumn(newWidth).withLevelState(this, ImmutableLevelState.of(true));
+        }
+        // Only levels that have to be broken are memoized. Levels without inner levels are cheap to break, and
+        // explorations have to be repeated to be recorded.
+        if (!hasInnerLevels() || observer.recordsExplorations()) {
+            return breakLevel(commentsHelper, maxWidth, state, observer);
+        }
+        return state.layoutMemo()
+                .computeIfAbsent(this, maxWidth, state, () -> breakLevel(commentsHelper, maxWidth, state, observer));
+    }
 
-                    return childLevel.finishLevel(state.updateAfterLevel(newState));
-                });
+    private boolean hasInnerLevels() {
+        for (Doc doc : docs) {
+            if (doc instanceof Level) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private State breakLevel(CommentsHelper commentsHelper, int maxWidth, State state, Obs.ExplorationNode observer) {
+        Obs.LevelNode childLevel = observer.newChildNode(this, state);
+        State newState = getBreakBehaviour().match(new BreakImpl(commentsHelper, maxWidth, state, childLevel));
+
+        return childLevel.finishLevel(state.updateAfterLevel(newState));
     }
 
     /**
      * Try to fit these docs belonging to the current level onto one line, returning empty if we couldn't. This takes
      * into account the level's {@link #getColumnLimitBeforeLastBreak()}.
      *
+     * <p>Columns only grow, so this stops at the first doc that overflows {@code maxWidth}.
+     *
      * @return the width after fitting it onto one line, if it was possible. This is guaranteed to be less than
-     *     {@code maxWidth}
+     *     {@code maxWidth}. Otherwise {@link #DOES_NOT_FIT}.
      */
-    private Optional<Integer> tryToFitOnOneLine(int maxWidth, State state, Iterable<Doc> docs) {
-        int column = state.column();
+    private int tryToFitOnOneLine(int maxWidth, int startColumn, List<Doc> docs) {
+        int column = startColumn;
         int columnBeforeLastBreak = 0; // Not activated by default
         for (Doc doc : docs) {
             if (doc instanceof Break && ((Break) doc).hasColumnLimit()) {
                 columnBeforeLastBreak = column;
             } else if (doc instanceof Level) {
                 // Levels might have nested levels that have a 'columnLimitBeforeLastBreak' set, so recurse.
-                State newState = state.withColumn(column);
-                Level innerLevel = (Level) doc;
-                Optional<Integer> newWidth = innerLevel.tryToFitOnOneLine(maxWidth, newState, innerLevel.getDocs());
-                if (!newWidth.isPresent()) {
-                    return Optional.empty();
+                column = ((Level) doc).tryToFitOnOneLine(maxWidth, column);
+                if (column == DOES_NOT_FIT) {
+                    return DOES_NOT_FIT;
                 }
-                column = newWidth.get();
                 continue;
             }
-            column = (int) (column + doc.getWidth());
+            column = addWidths(column, doc.getWidth());
+            if (column > maxWidth) {
+                return DOES_NOT_FIT;
+            }
         }
         // Make an additional check that widthBeforeLastBreak fits in the column limit
         if (getColumnLimitBeforeLastBreak().isPresent()
                 && columnBeforeLastBreak > getColumnLimitBeforeLastBreak().getAsInt()) {
-            return Optional.empty();
+            return DOES_NOT_FIT;
         }
 
         // Check that the entirety of this level fits on the current line.
         if (column <= maxWidth) {
-            return Optional.of(column);
+            return column;
         }
-        return Optional.empty();
+        return DOES_NOT_FIT;
+    }
+
+    /**
+     * Try to fit all the docs of this level onto one line, see {@link #tryToFitOnOneLine(int, int, List)}. Takes
+     * constant time if only the width matters, which is the case for most levels.
+     */
+    private int tryToFitOnOneLine(int maxWidth, int startColumn) {
+        if (widthDecidesFit) {
+            int column = addWidths(startColumn, getWidth());
+            return column <= maxWidth ? column : DOES_NOT_FIT;
+        }
+        return tryToFitOnOneLine(maxWidth, startColumn, docs);
     }
 
     class BreakImpl implements BreakBehaviour.Cases<State> {
@@ -177,13 +222,13 @@ public final class Level extends Doc {
             this.levelNode = levelNode;
         }
 
-        private Exploration breakNormally(State state) {
+        private State breakNormally(State state) {
             return Level.this.breakNormally(state, levelNode, commentsHelper, maxWidth);
         }
 
         @Override
         public State breakThisLevel() {
-            return breakNormally(state).markAccepted();
+            return levelNode.accept(breakNormally(state));
         }
 
         @Override
@@ -192,53 +237,52 @@ public final class Level extends Doc {
             // breaks if the outcome is the same.
             State state = this.state.withNewBranch();
 
-            Obs.Exploration broken = breakNormally(state);
+            State broken = breakNormally(state);
 
             if (state.branchingCoefficient() < MAX_BRANCHING_COEFFICIENT) {
                 State state1 = state.withNoIndent();
-                Optional<Obs.Exploration> lastLevelBroken = levelNode.maybeExplore(
+                Optional<State> lastLevelBroken = levelNode.maybeExplore(
                         "tryBreakLastLevel",
                         state1,
                         explorationNode -> tryBreakLastLevel(commentsHelper, maxWidth, state1, explorationNode, true));
 
                 if (lastLevelBroken.isPresent()) {
-                    if (lastLevelBroken.get().state().numLines()
-                            < broken.state().numLines()) {
-                        return lastLevelBroken.get().markAccepted();
+                    if (lastLevelBroken.get().numLines() < broken.numLines()) {
+                        return levelNode.accept(lastLevelBroken.get());
                     }
                 }
             }
-            return broken.markAccepted();
+            return levelNode.accept(broken);
         }
 
         @Override
         public State breakOnlyIfInnerLevelsThenFitOnOneLine(boolean keepIndentWhenInlined) {
-            Exploration broken = Level.this.breakNormally(state, levelNode, commentsHelper, maxWidth);
+            State broken = Level.this.breakNormally(state, levelNode, commentsHelper, maxWidth);
 
-            Optional<Exploration> maybeInlined = levelNode.maybeExplore(
+            Optional<State> maybeInlined = levelNode.maybeExplore(
                     "handle_breakOnlyIfInnerLevelsThenFitOnOneLine",
                     state,
                     explorationNode -> handle_breakOnlyIfInnerLevelsThenFitOnOneLine(
-                            commentsHelper, maxWidth, state, broken.state(), keepIndentWhenInlined, explorationNode));
+                            commentsHelper, maxWidth, state, broken, keepIndentWhenInlined, explorationNode));
 
             if (maybeInlined.isPresent()) {
-                return maybeInlined.get().markAccepted();
+                return levelNode.accept(maybeInlined.get());
             } else {
-                return broken.markAccepted();
+                return levelNode.accept(broken);
             }
         }
 
         @Override
         public State inlineSuffix() {
-            Optional<Obs.Exploration> lastLevelBroken = levelNode.maybeExplore(
+            Optional<State> lastLevelBroken = levelNode.maybeExplore(
                     "inlineSuffix",
                     state,
                     explorationNode -> tryInlineSuffix(commentsHelper, maxWidth, state, explorationNode, true));
-            return lastLevelBroken.orElseGet(() -> this.breakNormally(state)).markAccepted();
+            return levelNode.accept(lastLevelBroken.isPresent() ? lastLevelBroken.get() : breakNormally(state));
         }
     }
 
-    private Exploration breakNormally(State state, LevelNode levelNode, CommentsHelper commentsHelper, int maxWidth) {
+    private State breakNormally(State state, LevelNode levelNode, CommentsHelper commentsHelper, int maxWidth) {
         State stateForBroken = state.withIndentIncrementedBy(getPlusIndent());
         return levelNode.explore(
                 "breaking normally",
@@ -316,14 +360,15 @@ public final class Level extends Doc {
         // Add the width of tokens, breaks before the lastLevel. We must always have space for
         // these.
         List<Doc> leadingDocs = docs.subList(0, docs.indexOf(lastLevel));
-        float leadingWidth = getWidth(leadingDocs);
+        int leadingWidth = getWidth(leadingDocs);
 
         // Potentially add the width of prefixes we want to consider as part of the width that
         // must fit on the same line, so that we don't accidentally break prefixes when we could
         // have avoided doing so.
-        leadingWidth += new CountWidthUntilBreakVisitor(maxWidth - state.indent()).visit(lastLevel);
+        leadingWidth = addWidths(
+                leadingWidth, new CountWidthUntilBreakVisitor(maxWidth - state.indent()).visit(lastLevel));
 
-        boolean fits = !Float.isInfinite(leadingWidth) && state.column() + leadingWidth <= maxWidth;
+        boolean fits = addWidths(state.column(), leadingWidth) <= maxWidth;
 
         if (!fits) {
             return Optional.empty();
@@ -334,7 +379,7 @@ public final class Level extends Doc {
             newState = newState.withIndentIncrementedBy(getPlusIndent());
         }
         return Optional.of(tryToLayOutLevelOnOneLine(
-                commentsHelper, maxWidth, newState, memoizedSplitsBreaks.get(), explorationNode));
+                commentsHelper, maxWidth, newState, getSplitsBreaks(), explorationNode));
     }
 
     private Optional<State> tryBreakLastLevel(
@@ -390,13 +435,13 @@ public final class Level extends Doc {
         // This is essentially like a small part of computeBreaks.
         int innerLevelIndex = docs.indexOf(innerLevel);
         List<Doc> leadingDocs = docs.subList(0, innerLevelIndex);
-        if (!tryToFitOnOneLine(maxWidth, state, leadingDocs).isPresent()) {
+        if (tryToFitOnOneLine(maxWidth, state.column(), leadingDocs) == DOES_NOT_FIT) {
             return Optional.empty();
         }
 
         List<Doc> trailingDocs = docs.subList(innerLevelIndex + 1, docs.size());
-        float trailingWidth = getWidth(trailingDocs);
-        if (Double.isInfinite(trailingWidth)) {
+        int trailingWidth = getWidth(trailingDocs);
+        if (trailingWidth == INFINITE_WIDTH) {
             return Optional.empty();
         }
 
@@ -441,7 +486,8 @@ public final class Level extends Doc {
         }
         return state2.flatMap(stateAfterInner -> {
             // Do we have a suffix to inline too?
-            return tryToFitOnOneLine(maxWidth, stateAfterInner, trailingDocs).map(stateAfterInner::withColumn);
+            int newWidth = tryToFitOnOneLine(maxWidth, stateAfterInner.column(), trailingDocs);
+            return newWidth == DOES_NOT_FIT ? Optional.empty() : Optional.of(stateAfterInner.withColumn(newWidth));
         });
     }
 
@@ -453,21 +499,19 @@ public final class Level extends Doc {
             State state) {
         // Ok then, we are allowed to break here, but first verify that we have enough room to inline this last
         // level's prefix.
-        float extraWidth = new CountWidthUntilBreakVisitor(maxWidth - state.indent()).visit(lastLevel);
-        boolean stillFits = !Float.isInfinite(extraWidth) && state.column() + extraWidth <= maxWidth;
+        int extraWidth = new CountWidthUntilBreakVisitor(maxWidth - state.indent()).visit(lastLevel);
+        boolean stillFits = addWidths(state.column(), extraWidth) <= maxWidth;
         if (!stillFits) {
             return Optional.empty();
         }
 
         // Note: computeBreaks, not computeBroken, so it can try to do this logic recursively for the
         // lastLevel
-        return Optional.of(explorationNode
-                .newChildNode(lastLevel, state)
-                .explore(
-                        "end tryBreakLastLevel chain",
-                        state,
-                        exp -> lastLevel.computeBreaks(commentsHelper, maxWidth, state, exp))
-                .markAccepted());
+        LevelNode levelNode = explorationNode.newChildNode(lastLevel, state);
+        return Optional.of(levelNode.accept(levelNode.explore(
+                "end tryBreakLastLevel chain",
+                state,
+                exp -> lastLevel.computeBreaks(commentsHelper, maxWidth, state, exp))));
     }
 
     private static Optional<State> tryBreakInnerLevel_checkInner(
@@ -483,23 +527,25 @@ public final class Level extends Doc {
                     State state1 =
                             keepIndentWhenInlined ? state.withIndentIncrementedBy(innerLevel.getPlusIndent()) : state;
 
-                    return explorationNode
-                            .newChildNode(innerLevel, state1)
+                    LevelNode levelNode = explorationNode.newChildNode(innerLevel, state1);
+                    return levelNode
                             .maybeExplore(
                                     "recurse into inner tryBreakLastLevel",
                                     state1,
                                     exp -> innerLevel.tryBreakLastLevel(
                                             commentsHelper, maxWidth, state1, exp, isSimpleInlining))
-                            .map(Exploration::markAccepted);
+                            .map(levelNode::accept);
+                })
+                .inlineSuffix(() -> {
+                    LevelNode levelNode = explorationNode.newChildNode(innerLevel, state);
+                    return levelNode
+                            .maybeExplore(
+                                    "recurse into inner tryInlineSuffix",
+                                    state,
+                                    exp -> innerLevel.tryInlineSuffix(
+                                            commentsHelper, maxWidth, state, exp, isSimpleInlining))
+                            .map(levelNode::accept);
                 })
-                .inlineSuffix(() -> explorationNode
-                        .newChildNode(innerLevel, state)
-                        .maybeExplore(
-                                "recurse into inner tryInlineSuffix",
-                                state,
-                                exp -> innerLevel.tryInlineSuffix(
-                                        commentsHelper, maxWidth, state, exp, isSimpleInlining))
-                        .map(Exploration::markAccepted))
                 .breakOnlyIfInnerLevelsThenFitOnOneLine(keepIndentWhenInlined -> {
                     // This case currently only matches lambda _expressions_ (without curlies)
                     State state1 =
@@ -526,13 +572,13 @@ public final class Level extends Doc {
                                     case CHECK_INNER:
                                         return Optional.empty();
                                     case ACCEPT_INLINE_CHAIN:
-                                        Exploration broken =
+                                        State broken =
                                                 innerLevel.breakNormally(state, levelNode, commentsHelper, maxWidth);
                                         return innerLevel.handle_breakOnlyIfInnerLevelsThenFitOnOneLine(
                                                 commentsHelper,
                                                 maxWidth,
                                                 state1,
-                                                broken.state(),
+                                                broken,
                                                 keepIndentWhenInlined,
                                                 explorationNode);
                                     case ACCEPT_INLINE_CHAIN_IF_SIMPLE_OTHERWISE_CHECK_INNER:
@@ -551,7 +597,7 @@ public final class Level extends Doc {
                                         throw new RuntimeException("Unknown breakabilityIfLastLevel: " + lastLevel2);
                                 }
                             })
-                            .map(Exploration::markAccepted);
+                            .map(levelNode::accept);
                 })
                 // We don't know how to fit the inner level on the same line, so bail out.
                 .otherwise_(Optional.empty());
@@ -575,8 +621,8 @@ public final class Level extends Doc {
             }
 
             List<Doc> split = splitsBreaks.splits().get(i);
-            float splitWidth = getWidth(split);
-            boolean enoughRoom = state.column() + splitWidth <= maxWidth;
+            int splitWidth = getWidth(split);
+            boolean enoughRoom = addWidths(state.column(), splitWidth) <= maxWidth;
             state = computeSplit(commentsHelper, maxWidth, split, state.withMustBreak(false), explorationNode);
             if (!enoughRoom) {
                 state = state.withMustBreak(true);
@@ -585,6 +631,15 @@ public final class Level extends Doc {
         return state;
     }
 
+    private SplitsBreaks getSplitsBreaks() {
+        SplitsBreaks result = splitsBreaks;
+        if (result == null) {
+            result = splitByBreaks(docs);
+            splitsBreaks = result;
+        }
+        return result;
+    }
+
     private static SplitsBreaks splitByBreaks(List<Doc> docs) {
         ImmutableSplitsBreaks.Builder builder = ImmutableSplitsBreaks.builder();
         ImmutableList.Builder<Doc> currentSplit = ImmutableList.builder();
@@ -604,11 +659,14 @@ public final class Level extends Doc {
     /** Compute breaks for a {@link Level} that spans multiple lines. */
     private State computeBroken(
             CommentsHelper commentsHelper, int maxWidth, State state, Obs.ExplorationNode explorationNode) {
-        SplitsBreaks splitsBreaks = memoizedSplitsBreaks.get();
+        SplitsBreaks splitsBreaks = getSplitsBreaks();
 
         if (!splitsBreaks.breaks().isEmpty()) {
             state = state.withBrokenLevel();
         }
+        if (state.layoutMemo().laysOutInBackground() && !explorationNode.recordsExplorations()) {
+            layOutIndependentSplitsInBackground(commentsHelper, maxWidth, state, splitsBreaks);
+        }
 
         ImmutableList<Doc> splitDocs = splitsBreaks.splits().get(0);
         state = computeBreakAndSplit(
@@ -627,6 +685,28 @@ public final class Level extends Doc {
         return state;
     }
 
+    /**
+     * Starts laying out the inner levels that make up a whole split after a forced break, such as the members of a
+     * class, in the background. Such a level starts at the indent after the break whatever comes before it, so the
+     * state that it will be laid out from is known up front. The {@link LayoutMemo} takes the layouts when this level
+     * gets to them, if the state turned out as expected, so the result is the same as laying them out in order.
+     */
+    private static void layOutIndependentSplitsInBackground(
+            CommentsHelper commentsHelper, int maxWidth, State state, SplitsBreaks splitsBreaks) {
+        for (int i = 0; i < splitsBreaks.breaks().size(); i++) {
+            Break brk = splitsBreaks.breaks().get(i);
+            List<Doc> split = splitsBreaks.splits().get(i + 1);
+            if (brk.isForced()
+                    && split.size() == 1
+                    && split.get(0) instanceof Level
+                    && ((Level) split.get(0)).hasInnerLevels()) {
+                // The same as computeBreakAndSplit does, as forced breaks are always taken.
+                State stateAfterBreak = brk.computeBreaks(state, true).withMustBreak(false);
+                state.layoutMemo().layOutInBackground((Level) split.get(0), maxWidth, stateAfterBreak, commentsHelper);
+            }
+        }
+    }
+
     /** Lay out a Break-separated group of Docs in the current Level. */
     private State computeBreakAndSplit(
             CommentsHelper commentsHelper,
@@ -635,19 +715,18 @@ public final class Level extends Doc {
             Optional<Break> optBreakDoc,
             List<Doc> split,
             Obs.ExplorationNode explorationNode) {
-        float breakWidth = optBreakDoc.isPresent() ? optBreakDoc.get().getWidth() : 0.0F;
-        float splitWidth = getWidth(split);
+        int breakWidth = optBreakDoc.isPresent() ? optBreakDoc.get().getWidth() : 0;
+        int splitWidth = getWidth(split);
 
         boolean shouldBreak = (optBreakDoc.isPresent() && optBreakDoc.get().fillMode() == FillMode.UNIFIED)
                 || state.mustBreak()
-                || Double.isInfinite(breakWidth)
-                || !tryToFitOnOneLine(maxWidth, state.withColumn(state.column() + (int) breakWidth), split)
-                        .isPresent();
+                || breakWidth == INFINITE_WIDTH
+                || tryToFitOnOneLine(maxWidth, state.column() + breakWidth, split) == DOES_NOT_FIT;
 
         if (optBreakDoc.isPresent()) {
             state = optBreakDoc.get().computeBreaks(state, shouldBreak);
         }
-        boolean enoughRoom = state.column() + splitWidth <= maxWidth;
+        boolean enoughRoom = addWidths(state.column(), splitWidth) <= maxWidth;
         state = computeSplit(commentsHelper, maxWidth, split, state.withMustBreak(false), explorationNode);
         if (!enoughRoom) {
             state = state.withMustBreak(true); // Break after, too.
@@ -677,7 +756,7 @@ public final class Level extends Doc {
     }
 
     private void writeFilled(State state, Output output) {
-        SplitsBreaks splitsBreaks = memoizedSplitsBreaks.get();
+        SplitsBreaks splitsBreaks = getSplitsBreaks();
         // Handle first split.
         for (Doc doc : splitsBreaks.splits().get(0)) {
             doc.write(state, output);
@@ -736,12 +815,12 @@ public final class Level extends Doc {
      * Get the width of a sequence of {@link Doc}s.
      *
      * @param docs the {@link Doc}s
-     * @return the width, or {@code Float.POSITIVE_INFINITY} if any {@link Doc} must be broken
+     * @return the width, or {@link #INFINITE_WIDTH} if any {@link Doc} must be broken
      */
-    static float getWidth(Iterable<Doc> docs) {
-        float width = 0.0F;
-        for (Doc doc : docs) {
-            width += doc.getWidth();
+    static int getWidth(List<Doc> docs) {
+        int width = 0;
+        for (int i = 0; i < docs.size() && width != INFINITE_WIDTH; i++) {
+            width = addWidths(width, docs.get(i).getWidth());
         }
         return width;
     }
@@ -0,0 +1,157 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.doc;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Range;
+import com.palantir.javaformat.BreakBehaviour;
+import com.palantir.javaformat.BreakBehaviours;
+import com.palantir.javaformat.doc.Obs.FinishExplorationNode;
+import com.palantir.javaformat.doc.Obs.FinishLevelNode;
+import com.palantir.javaformat.doc.Obs.Sink;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.TreeMap;
+
+/**
+ * A {@link Sink} that only counts what the layout search does, cheaply enough to run on every file: how many levels it
+ * laid out, how many explorations it made for each kind of {@link BreakBehaviour}, how far it branched, and which
+ * levels took the most layouts of themselves and their inner levels.
+ *
+ * <p>Meant to be observed through {@link Obs#createCountingRoot}. Unlike the JSON output for the debugger, that lets
+ * {@link Level} skip repeated explorations, so the sink counts the work that was actually done.
+ *
+ * <p>Not thread-safe: one sink per format run.
+ */
+public final class MetricsSink implements Sink {
+    private static final int NO_PARENT = -1;
+
+    private int levels = 0;
+    private int maxBranchingCoefficient = 0;
+    private final Map<String, Integer> explorationsByBreakBehaviour = new TreeMap<>();
+
+    /** The level of each level node, and the level node that it was laid out under. */
+    private final Map<Integer, LevelNode> levelNodes = new HashMap<>();
+
+    /** The level node that each exploration was made at. */
+    private final Map<Integer, Integer> explorationParents = new HashMap<>();
+
+    /** The number of layouts of each level and its inner levels. */
+    private final Map<Level, Integer> layouts = new HashMap<>();
+
+    @Override
+    public FinishExplorationNode startExplorationNode(
+            int exporationId,
+            OptionalInt parentLevelId,
+            String humanDescription,
+            int startColumn,
+            Optional<State> incomingState) {
+        int parentLevelNodeId = parentLevelId.orElse(NO_PARENT);
+        explorationParents.put(exporationId, parentLevelNodeId);
+        incomingState.ifPresent(this::recordBranchingCoefficient);
+        LevelNode parent = levelNodes.get(parentLevelNodeId);
+        if (parent != null) {
+            explorationsByBreakBehaviour.merge(caseName(parent.level.getBreakBehaviour()), 1, Integer::sum);
+        }
+        return (_parentLevel, _newState) -> {};
+    }
+
+    @Override
+    public FinishLevelNode writeLevelNode(int levelNodeId, int parentExplorationId, State incomingState, Level level) {
+        levels++;
+        recordBranchingCoefficient(incomingState);
+        int parentLevelNodeId = explorationParents.getOrDefault(parentExplorationId, NO_PARENT);
+        levelNodes.put(levelNodeId, new LevelNode(level, parentLevelNodeId));
+        // Laying out a level is part of the cost of every level that it is inside of.
+        LevelNode node = levelNodes.get(levelNodeId);
+        while (node != null) {
+            layouts.merge(node.level, 1, Integer::sum);
+            node = levelNodes.get(node.parentLevelNodeId);
+        }
+        return _acceptedExplorationId -> {};
+    }
+
+    /** The number of times a level did not fit on one line and was laid out. */
+    public int levels() {
+        return levels;
+    }
+
+    /** The largest {@link State#branchingCoefficient()} that the search reached. */
+    public int maxBranchingCoefficient() {
+        return maxBranchingCoefficient;
+    }
+
+    /** The number of explorations of levels, by the name of their {@link BreakBehaviour} case. */
+    public ImmutableSortedMap<String, Integer> explorationsByBreakBehaviour() {
+        return ImmutableSortedMap.copyOf(explorationsByBreakBehaviour);
+    }
+
+    /** The {@code limit} levels with the most layouts of themselves and their inner levels, most expensive first. */
+    public ImmutableList<LevelCost> mostExpensiveLevels(int limit) {
+        return layouts.entrySet().stream()
+                .sorted(Map.Entry.<Level, Integer>comparingByValue(Comparator.reverseOrder()))
+                .limit(limit)
+                .map(entry -> new LevelCost(entry.getKey().range(), entry.getValue()))
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    private void recordBranchingCoefficient(State state) {
+        maxBranchingCoefficient = Math.max(maxBranchingCoefficient, state.branchingCoefficient());
+    }
+
+    private static String caseName(BreakBehaviour breakBehaviour) {
+        return BreakBehaviours.caseOf(breakBehaviour)
+                .breakThisLevel_("breakThisLevel")
+                .preferBreakingLastInnerLevel_("preferBreakingLastInnerLevel")
+                .inlineSuffix_("inlineSuffix")
+                .breakOnlyIfInnerLevelsThenFitOnOneLine_("breakOnlyIfInnerLevelsThenFitOnOneLine");
+    }
+
+    private static final class LevelNode {
+        private final Level level;
+        private final int parentLevelNodeId;
+
+        LevelNode(Level level, int parentLevelNodeId) {
+            this.level = level;
+            this.parentLevelNodeId = parentLevelNodeId;
+        }
+    }
+
+    /** The number of layouts that a level took, and the input tokens that it spans. */
+    public static final class LevelCost {
+        private final Range<Integer> tokenRange;
+        private final int layouts;
+
+        LevelCost(Range<Integer> tokenRange, int layouts) {
+            this.tokenRange = tokenRange;
+            this.layouts = layouts;
+        }
+
+        /** The indexes of the input tokens in the level, see {@link com.palantir.javaformat.Input.Tok#getIndex()}. */
+        public Range<Integer> tokenRange() {
+            return tokenRange;
+        }
+
+        public int layouts() {
+            return layouts;
+        }
+    }
+}
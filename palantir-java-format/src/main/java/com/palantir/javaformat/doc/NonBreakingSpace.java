@@ -38,13 +38,13 @@ public final class NonBreakingSpace extends Doc implements Op {
     }
 
     @Override
-    protected float computeWidth() {
-        return 1.0F;
+    protected int computeWidth() {
+        return 1;
     }
 
     @Override
-    protected String computeFlat() {
-        return " ";
+    protected void appendFlat(StringBuilder builder) {
+        builder.append(' ');
     }
 
     @Override
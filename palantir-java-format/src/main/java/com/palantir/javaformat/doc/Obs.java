@@ -16,6 +16,9 @@
 
 package com.palantir.javaformat.doc;
 
+import com.google.common.base.Preconditions;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.function.Function;
@@ -24,6 +27,9 @@ import javax.annotation.CheckReturnValue;
 /**
  * These classes exist purely for observing the operation of {@link Doc#computeBreaks}, including all the alternative
  * hypotheses it has considered and rejected before deciding on the final formatting.
+ *
+ * <p>Observing only costs anything when it is switched on, with {@link #createRoot}. Otherwise {@link #untraced()} is a
+ * single stateless node, whose explorations are direct calls that allocate nothing.
  */
 public final class Obs {
     private Obs() {}
@@ -41,7 +47,8 @@ public final class Obs {
     public interface ExplorationNode {
         LevelNode newChildNode(Level level, State state);
 
-        int id();
+        /** Whether explorations are being recorded, in which case every exploration must actually be carried out. */
+        boolean recordsExplorations();
     }
 
     public interface Sink {
@@ -60,43 +67,108 @@ public final class Obs {
          */
         @CheckReturnValue
         FinishLevelNode writeLevelNode(int levelNodeId, int parentExplorationId, State incomingState, Level level);
-
-        String getOutput();
     }
 
+    /** Returns the root of a tree of nodes that records every exploration into {@code sink}. */
     public static ExplorationNode createRoot(Sink sink) {
-        return new ExplorationNodeImpl(null, "(initial node)", sink, 0, Optional.empty());
+        return new ExplorationNodeImpl(null, "(initial node)", sink, true, 0, Optional.empty());
     }
 
-    /** At a single level, you can explore various options for how to break lines and then accept one. */
-    interface LevelNode {
+    /**
+     * Returns the root of a tree of nodes that reports only the explorations that are carried out into {@code sink}.
+     * {@link Level} is free to skip repeated explorations, so the sink sees the work that was actually done.
+     */
+    public static ExplorationNode createCountingRoot(Sink sink) {
+        return new ExplorationNodeImpl(null, "(initial node)", sink, false, 0, Optional.empty());
+    }
+
+    /** Returns the node to lay out with when nothing is being observed. */
+    public static ExplorationNode untraced() {
+        return Untraced.INSTANCE;
+    }
 
-        Exploration explore(String humanDescription, State incomingState, Function<ExplorationNode, State> supplier);
+    /**
+     * At a single level, you can explore various options for how to break lines and then accept one. Explorations count
+     * against the {@link LayoutBudget} of the run.
+     *
+     * <p>An exploration is identified by the state that it produced, which is passed back to {@link #accept}.
+     */
+    interface LevelNode {
 
-        int id();
+        /** Explores an option that must be carried out, even once the budget is exhausted. */
+        State explore(String humanDescription, State incomingState, Function<ExplorationNode, State> supplier);
 
-        Optional<Exploration> maybeExplore(
+        /** Explores an alternative option, or returns empty without trying it if the budget is exhausted. */
+        Optional<State> maybeExplore(
                 String humanDescription, State incomingState, Function<ExplorationNode, Optional<State>> supplier);
 
+        /** Accepts the exploration of this level that produced {@code exploredState}, and returns that state. */
+        State accept(State exploredState);
+
         State finishLevel(State state);
     }
 
-    /** A handle that lets you accept exactly one 'exploration' of how to format a level. */
-    interface Exploration {
-        State markAccepted();
+    /** The node of every level and exploration when nothing is observed. */
+    private enum Untraced implements ExplorationNode, LevelNode {
+        INSTANCE;
+
+        @Override
+        public LevelNode newChildNode(Level level, State state) {
+            return this;
+        }
+
+        @Override
+        public boolean recordsExplorations() {
+            return false;
+        }
+
+        @Override
+        public State explore(
+                String humanDescription, State incomingState, Function<ExplorationNode, State> explorationFunc) {
+            incomingState.layoutBudget().spend();
+            return explorationFunc.apply(this);
+        }
+
+        @Override
+        public Optional<State> maybeExplore(
+                String humanDescription,
+                State incomingState,
+                Function<ExplorationNode, Optional<State>> explorationFunc) {
+            if (!incomingState.layoutBudget().trySpend()) {
+                return Optional.empty();
+            }
+            return explorationFunc.apply(this);
+        }
+
+        @Override
+        public State accept(State exploredState) {
+            return exploredState;
+        }
 
-        State state();
+        @Override
+        public State finishLevel(State state) {
+            return state;
+        }
     }
 
     private static class LevelNodeImpl extends HasUniqueId implements LevelNode {
         private final Level level;
         private final Sink sink;
+        private final boolean recordsExplorations;
         private final FinishLevelNode finisher;
         private final int startColumn;
 
-        public LevelNodeImpl(Level level, State incomingState, int parentExplorationId, Sink sink) {
+        /**
+         * The explorations of this level by the state that they produced. Explorations that happen to produce the
+         * same state are told apart by the last one.
+         */
+        private final Map<State, Integer> explorationIds = new IdentityHashMap<>();
+
+        public LevelNodeImpl(
+                Level level, State incomingState, int parentExplorationId, Sink sink, boolean recordsExplorations) {
             this.level = level;
             this.sink = sink;
+            this.recordsExplorations = recordsExplorations;
             this.finisher = sink.writeLevelNode(id(), parentExplorationId, incomingState, level);
             this.startColumn = incomingState.column();
         }
@@ -106,54 +178,39 @@ public final class Obs {
          *     this level's {@code incomingState}.
          */
         @Override
-        public Exploration explore(
+        public State explore(
                 String humanDescription, State incomingState, Function<ExplorationNode, State> explorationFunc) {
-            ExplorationNodeImpl explorationNode =
-                    new ExplorationNodeImpl(this, humanDescription, sink, startColumn, Optional.of(incomingState));
+            incomingState.layoutBudget().spend();
+            ExplorationNodeImpl explorationNode = new ExplorationNodeImpl(
+                    this, humanDescription, sink, recordsExplorations, startColumn, Optional.of(incomingState));
             State newState = explorationFunc.apply(explorationNode);
             explorationNode.recordNewState(Optional.of(newState));
-
-            return new Exploration() {
-                @Override
-                public State markAccepted() {
-                    finisher.finishNode(explorationNode.id());
-                    return newState;
-                }
-
-                @Override
-                public State state() {
-                    return newState;
-                }
-            };
+            explorationIds.put(newState, explorationNode.id());
+            return newState;
         }
 
         @Override
-        public Optional<Exploration> maybeExplore(
+        public Optional<State> maybeExplore(
                 String humanDescription,
                 State incomingState,
                 Function<ExplorationNode, Optional<State>> explorationFunc) {
-            ExplorationNodeImpl explorationNode =
-                    new ExplorationNodeImpl(this, humanDescription, sink, startColumn, Optional.of(incomingState));
-            Optional<State> maybeNewState = explorationFunc.apply(explorationNode);
-            explorationNode.recordNewState(maybeNewState);
-
-            if (!maybeNewState.isPresent()) {
+            if (!incomingState.layoutBudget().trySpend()) {
                 return Optional.empty();
             }
+            ExplorationNodeImpl explorationNode = new ExplorationNodeImpl(
+                    this, humanDescription, sink, recordsExplorations, startColumn, Optional.of(incomingState));
+            Optional<State> maybeNewState = explorationFunc.apply(explorationNode);
+            explorationNode.recordNewState(maybeNewState);
+            maybeNewState.ifPresent(newState -> explorationIds.put(newState, explorationNode.id()));
+            return maybeNewState;
+        }
 
-            State newState = maybeNewState.get();
-            return Optional.of(new Exploration() {
-                @Override
-                public State markAccepted() {
-                    finisher.finishNode(explorationNode.id());
-                    return newState;
-                }
-
-                @Override
-                public State state() {
-                    return newState;
-                }
-            });
+        @Override
+        public State accept(State exploredState) {
+            Integer explorationId = explorationIds.get(exploredState);
+            Preconditions.checkArgument(explorationId != null, "State was not explored at this level");
+            finisher.finishNode(explorationId);
+            return exploredState;
         }
 
         @Override
@@ -166,6 +223,7 @@ public final class Obs {
 
     private static class ExplorationNodeImpl extends HasUniqueId implements ExplorationNode {
         private final Sink sink;
+        private final boolean recordsExplorations;
         private final FinishExplorationNode finishExplorationNode;
         private final Optional<Level> parentLevel;
 
@@ -173,10 +231,12 @@ public final class Obs {
                 LevelNodeImpl parent,
                 String humanDescription,
                 Sink sink,
+                boolean recordsExplorations,
                 int startColumn,
                 Optional<State> incomingState) {
             this.parentLevel = Optional.ofNullable(parent).map(p -> p.level);
             this.sink = sink;
+            this.recordsExplorations = recordsExplorations;
             this.finishExplorationNode = sink.startExplorationNode(
                     id(),
                     parent != null ? OptionalInt.of(parent.id()) : OptionalInt.empty(),
@@ -187,7 +247,12 @@ public final class Obs {
 
         @Override
         public LevelNode newChildNode(Level level, State state) {
-            return new LevelNodeImpl(level, state, id(), sink);
+            return new LevelNodeImpl(level, state, id(), sink, recordsExplorations);
+        }
+
+        @Override
+        public boolean recordsExplorations() {
+            return recordsExplorations;
         }
 
         void recordNewState(Optional<State> maybeNewState) {
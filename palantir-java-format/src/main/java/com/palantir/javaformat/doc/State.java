@@ -16,37 +16,92 @@
 
 package com.palantir.javaformat.doc;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.base.MoreObjects;
 import com.google.errorprone.annotations.Immutable;
 import com.palantir.javaformat.Indent;
-import fj.data.Set;
-import fj.data.TreeMap;
+import com.palantir.javaformat.doc.StateTables.Table;
+import com.palantir.javaformat.doc.StateTables.Version;
+import com.palantir.javaformat.doc.StateTables.Writes;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
 import org.immutables.value.Value;
 import org.immutables.value.Value.Parameter;
 
-/** State for writing. */
-// Automatically suppressed to unblock enforcement in new code
-@SuppressWarnings("ImmutablesStyle")
-@Value.Immutable
-@Value.Style(overshadowImplementation = true)
-@JsonSerialize(as = ImmutableState.class)
+/**
+ * State for writing.
+ *
+ * <p>The scalar parts of a state are plain fields, and every change makes a new state without going through a
+ * builder. The per-{@link Doc} and per-{@link BreakTag} parts are kept in the {@link StateTables} of the format run,
+ * which all of its states share, and a state only holds its version of them.
+ */
 @Immutable
-public abstract class State {
+public final class State {
+    private final int lastIndent;
+    private final int indent;
+    private final int column;
+    private final boolean mustBreak;
+    private final int numLines;
+    private final int branchingCoefficient;
+
+    @SuppressWarnings("Immutable") // The version is immutable, the tables only cache its contents.
+    private final StateTables tables;
+
+    @SuppressWarnings("Immutable")
+    private final Version version;
+
+    private State(
+            int lastIndent,
+            int indent,
+            int column,
+            boolean mustBreak,
+            int numLines,
+            int branchingCoefficient,
+            StateTables tables,
+            Version version) {
+        this.lastIndent = lastIndent;
+        this.indent = indent;
+        this.column = column;
+        this.mustBreak = mustBreak;
+        this.numLines = numLines;
+        this.branchingCoefficient = branchingCoefficient;
+        this.tables = tables;
+        this.version = version;
+    }
+
     /** Last indent that was actually taken. */
-    public abstract int lastIndent();
+    @JsonProperty
+    public int lastIndent() {
+        return lastIndent;
+    }
+
     /** Next indent, if the level is about to be broken. */
-    public abstract int indent();
+    @JsonProperty
+    public int indent() {
+        return indent;
+    }
 
-    public abstract int column();
+    @JsonProperty
+    public int column() {
+        return column;
+    }
+
+    @JsonProperty
+    public boolean mustBreak() {
+        return mustBreak;
+    }
 
-    public abstract boolean mustBreak();
     /** Counts how many lines a particular formatting took. */
-    public abstract int numLines();
+    @JsonProperty
+    public int numLines() {
+        return numLines;
+    }
 
     /**
      * Counts how many times reached a branch, where multiple formattings would be considered. Expected runtime is
@@ -54,53 +109,51 @@ public abstract class State {
      *
      * @see State#withNewBranch()
      */
-    public abstract int branchingCoefficient();
-
-    @Value.Auxiliary
-    @JsonIgnore
-    protected abstract Set<BreakTag> breakTagsTaken();
-
-    @Value.Auxiliary
-    @JsonIgnore
-    protected abstract TreeMap<Break, BreakState> breakStates();
+    @JsonProperty
+    public int branchingCoefficient() {
+        return branchingCoefficient;
+    }
 
-    @Value.Auxiliary
-    @JsonIgnore
-    protected abstract TreeMap<Level, LevelState> levelStates();
+    /** Returns the state at the start of a new format run, which does not share anything with other runs. */
+    public static State startingState() {
+        return startingState(null, null, LayoutBudget.unlimited());
+    }
 
     /**
-     * Keep track of how each {@link Comment} was written (these are mostly comments), which can differ depending on the
-     * starting column and the maxLength.
+     * Returns the state at the start of a new format run, which reuses the layouts of unchanged levels from the
+     * previous run that used {@code layoutCache}, if given, lays out independent large levels on
+     * {@code layoutExecutor}, if given, and stops searching for better layouts once {@code budget} is exhausted.
      */
-    @Value.Auxiliary
-    @JsonIgnore
-    protected abstract TreeMap<Comment, TokState> tokStates();
+    public static State startingState(
+            @Nullable LayoutCache layoutCache, @Nullable Executor layoutExecutor, LayoutBudget budget) {
+        if (layoutCache != null) {
+            layoutCache.startRun();
+        }
+        StateTables tables = new StateTables(layoutCache, layoutExecutor, budget);
+        return new State(0, 0, 0, false, 0, 0, tables, tables.root());
+    }
 
-    public static State startingState() {
-        return builder()
-                .lastIndent(0)
-                .indent(0)
-                .column(0)
-                .mustBreak(false)
-                .numLines(0)
-                .branchingCoefficient(0)
-                .breakTagsTaken(Set.empty(HasUniqueId.ord()))
-                .breakStates(TreeMap.empty(HasUniqueId.ord()))
-                .levelStates(TreeMap.empty(HasUniqueId.ord()))
-                .tokStates(TreeMap.empty(HasUniqueId.ord()))
-                .build();
+    /**
+     * Returns a state with the same column, indents and flags as this one, in the tables of a new format run that
+     * shares the budget of this one.
+     */
+    State detach() {
+        StateTables newTables = new StateTables(null, null, layoutBudget());
+        return new State(
+                lastIndent, indent, column, mustBreak, numLines, branchingCoefficient, newTables, newTables.root());
     }
 
     public BreakState getBreakState(Break brk) {
-        return breakStates().get(brk).orSome(ImmutableBreakState.of(false, -1));
+        BreakState breakState = (BreakState) tables.get(version, Table.BREAK_STATES, brk);
+        return breakState != null ? breakState : ImmutableBreakState.of(false, -1);
     }
 
     public boolean wasBreakTaken(BreakTag breakTag) {
-        return breakTagsTaken().member(breakTag);
+        return tables.get(version, Table.BREAK_TAGS_TAKEN, breakTag) != null;
     }
 
     boolean isOneLine(Level level) {
-        LevelState levelState = levelStates().get(level).toNull();
+        LevelState levelState = (LevelState) tables.get(version, Table.LEVEL_STATES, level);
         return levelState != null && levelState.oneLine();
     }
 
@@ -108,21 +161,24 @@ public abstract class State {
         // A TokState will only be present if computeBreaks was called.
         // That won't always happen, for example when the level containing this comment was one-lined.
         // Note: if the parent level was inlined, this method itself also won't get called, unless we're in debug mode.
-        return tokStates().get(comment).map(TokState::text).orSome(comment::getFlat);
+        TokState tokState = (TokState) tables.get(version, Table.TOK_STATES, comment);
+        return tokState != null ? tokState.text() : comment.flat();
+    }
+
+    LayoutMemo layoutMemo() {
+        return tables.layoutMemo();
+    }
+
+    LayoutBudget layoutBudget() {
+        return tables.layoutMemo().budget();
     }
 
     /** Record whether break was taken. */
     State breakTaken(BreakTag breakTag, boolean broken) {
-        boolean currentlyBroken = breakTagsTaken().member(breakTag);
+        boolean currentlyBroken = wasBreakTaken(breakTag);
         // TODO(dsanduleac): is the opposite ever a valid state?
         if (currentlyBroken != broken) {
-            Set<BreakTag> newSet;
-            if (broken) {
-                newSet = breakTagsTaken().insert(breakTag);
-            } else {
-                newSet = breakTagsTaken().delete(breakTag);
-            }
-            return builder().from(this).breakTagsTaken(newSet).build();
+            return withVersion(tables.set(version, Table.BREAK_TAGS_TAKEN, breakTag, broken ? Boolean.TRUE : null));
         }
         return this;
     }
@@ -132,97 +188,108 @@ public abstract class State {
      * not commit to the indent just yet though, so lastIndent stays the same.
      */
     State withIndentIncrementedBy(Indent plusIndent) {
-        return builder()
-                .from(this)
-                .indent(indent() + plusIndent.eval(this))
-                .mustBreak(false)
-                .build();
+        int newIndent = indent + plusIndent.eval(this);
+        return new State(lastIndent, newIndent, column, false, numLines, branchingCoefficient, tables, version);
     }
 
     /** Reset any accumulated indent to the same value as {@code lastIndent}. */
     State withNoIndent() {
-        return builder().from(this).indent(lastIndent()).mustBreak(false).build();
+        return new State(lastIndent, lastIndent, column, false, numLines, branchingCoefficient, tables, version);
     }
 
     /** The current level is being broken and it has breaks in it. Commit to the indent. */
     State withBrokenLevel() {
-        return builder().from(this).lastIndent(indent()).build();
+        return new State(indent, indent, column, mustBreak, numLines, branchingCoefficient, tables, version);
     }
 
     State withBreak(Break brk, boolean broken) {
-        Builder builder = builder().from(this);
-
         if (broken) {
-            int newColumn = Math.max(indent() + brk.evalPlusIndent(this), 0);
+            int newColumn = Math.max(indent + brk.evalPlusIndent(this), 0);
 
-            return builder
+            return new State(
                     // lastIndent = indent -- we've proven that we wrote some stuff at the new 'indent'
-                    .lastIndent(indent())
-                    .column(newColumn)
-                    .numLines(numLines() + 1)
-                    .breakStates(breakStates().set(brk, ImmutableBreakState.of(true, newColumn)))
-                    .build();
+                    indent,
+                    indent,
+                    newColumn,
+                    mustBreak,
+                    numLines + 1,
+                    branchingCoefficient,
+                    tables,
+                    tables.set(version, Table.BREAK_STATES, brk, ImmutableBreakState.of(true, newColumn)));
         } else {
-            return builder.column(column() + brk.getFlat().length()).build();
+            return withColumn(column + brk.flat().length());
         }
     }
 
     /** Update the current state after having processed an _inner_ level. */
     State updateAfterLevel(State afterInnerLevel) {
-        return builder()
+        return new State(
                 // Inherited current state
-                .lastIndent(lastIndent())
-                .indent(indent())
-                .branchingCoefficient(branchingCoefficient())
-                .mustBreak(mustBreak())
-                // Overridden state
-                .column(afterInnerLevel.column())
-                .numLines(afterInnerLevel.numLines())
+                lastIndent,
+                indent,
+                afterInnerLevel.column,
+                mustBreak,
+                afterInnerLevel.numLines,
+                branchingCoefficient,
+                tables,
                 // TODO(dsanduleac): put these behind a "GlobalState"
-                .breakTagsTaken(afterInnerLevel.breakTagsTaken())
-                .breakStates(afterInnerLevel.breakStates())
-                .levelStates(afterInnerLevel.levelStates())
-                .tokStates(afterInnerLevel.tokStates())
-                .build();
+                afterInnerLevel.version);
     }
 
     State addNewLines(int extraNewlines) {
-        return builder().from(this).numLines(numLines() + extraNewlines).build();
+        return new State(
+                lastIndent, indent, column, mustBreak, numLines + extraNewlines, branchingCoefficient, tables, version);
     }
 
-    State withColumn(int column) {
-        return builder().from(this).column(column).build();
+    State withColumn(int newColumn) {
+        return new State(lastIndent, indent, newColumn, mustBreak, numLines, branchingCoefficient, tables, version);
     }
 
-    State withMustBreak(boolean mustBreak) {
-        return builder().from(this).mustBreak(mustBreak).build();
+    State withMustBreak(boolean newMustBreak) {
+        return new State(lastIndent, indent, column, newMustBreak, numLines, branchingCoefficient, tables, version);
     }
 
     State withNewBranch() {
-        return builder()
-                .from(this)
-                .branchingCoefficient(branchingCoefficient() + 1)
-                .build();
+        return new State(lastIndent, indent, column, mustBreak, numLines, branchingCoefficient + 1, tables, version);
     }
 
     State withLevelState(Level level, LevelState levelState) {
-        return builder()
-                .from(this)
-                .levelStates(levelStates().set(level, levelState))
-                .build();
+        return withVersion(tables.set(version, Table.LEVEL_STATES, level, levelState));
     }
 
     State withTokState(Comment comment, TokState tokState) {
-        return builder()
-                .from(this)
-                .tokStates(tokStates().set(comment, tokState))
-                .build();
+        return withVersion(tables.set(version, Table.TOK_STATES, comment, tokState));
+    }
+
+    /**
+     * Returns the writes made to the tables since {@code earlier}, or empty if this state was not derived from
+     * {@code earlier}.
+     */
+    Optional<Writes> writesSince(State earlier) {
+        return earlier.tables == tables
+                ? Optional.ofNullable(tables.writesBetween(earlier.version, version))
+                : Optional.empty();
+    }
+
+    /** Returns this state after making {@code writes} to the tables. */
+    State replay(Writes writes) {
+        return withVersion(tables.replay(version, writes));
     }
 
-    public static class Builder extends ImmutableState.Builder {}
+    private State withVersion(Version newVersion) {
+        return new State(lastIndent, indent, column, mustBreak, numLines, branchingCoefficient, tables, newVersion);
+    }
 
-    public static Builder builder() {
-        return new Builder();
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("lastIndent", lastIndent)
+                .add("indent", indent)
+                .add("column", column)
+                .add("mustBreak", mustBreak)
+                .add("numLines", numLines)
+                .add("branchingCoefficient", branchingCoefficient)
+                .toString();
     }
 
     @Target(ElementType.TYPE)
@@ -0,0 +1,261 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.doc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
+
+/**
+ * The per-{@link Doc} and per-{@link BreakTag} parts of the {@link State}s of a format run, kept in mutable tables that
+ * all states of the run share.
+ *
+ * <p>Every write creates a {@link Version} that records the old and the new value, so the versions form a tree rooted
+ * at the starting state, and each state points at its version. The tables always hold the contents of one version.
+ * Reading or writing through another state first checks out that state's version, undoing writes up to the common
+ * ancestor and redoing writes from there. The layout search mostly extends the latest state, and only goes back a
+ * short way when it abandons an exploration, so a checkout is usually free, and otherwise costs as much as the writes
+ * that it crosses. Compared to persistent maps, a write costs one small allocation rather than a path of tree nodes.
+ *
+ * <p>The tables are arrays indexed by {@link HasUniqueId#id()}, which is dense within a format run. Objects created
+ * outside of a run have negative ids, and their values are kept in identity maps instead.
+ *
+ * <p>Not thread-safe: the states of a run must be used from one thread at a time.
+ */
+final class StateTables {
+    /** The tables, with the type of their values. Values are absent (null) by default. */
+    enum Table {
+        /** {@link Boolean#TRUE} for each {@link BreakTag} that was taken. */
+        BREAK_TAGS_TAKEN,
+        /** The {@link State.BreakState} of each {@link Break} that was taken. */
+        BREAK_STATES,
+        /** The {@link State.LevelState} of each {@link Level} that was laid out on one line. */
+        LEVEL_STATES,
+        /** The {@link State.TokState} of each {@link Comment} that was laid out. */
+        TOK_STATES
+    }
+
+    private static final int MIN_CAPACITY = 64;
+
+    /** Created on first use, as many states are only ever used to evaluate an indent. */
+    private final Object[][] tables = new Object[Table.values().length][];
+
+    private final Map<Table, Map<HasUniqueId, Object>> unscopedTables = new EnumMap<>(Table.class);
+
+    private final LayoutMemo layoutMemo;
+    private final Version root = new Version(null, Table.BREAK_TAGS_TAKEN, null, null, null);
+    private Version current = root;
+
+    StateTables(@Nullable LayoutCache layoutCache, @Nullable Executor layoutExecutor, LayoutBudget budget) {
+        this.layoutMemo = new LayoutMemo(layoutCache, layoutExecutor, budget);
+    }
+
+    Version root() {
+        return root;
+    }
+
+    LayoutMemo layoutMemo() {
+        return layoutMemo;
+    }
+
+    @Nullable
+    Object get(Version version, Table table, HasUniqueId key) {
+        checkout(version);
+        int id = key.id();
+        if (id < 0) {
+            Map<HasUniqueId, Object> values = unscopedTables.get(table);
+            return values == null ? null : values.get(key);
+        }
+        Object[] values = tables[table.ordinal()];
+        return values == null || id >= values.length ? null : values[id];
+    }
+
+    /** Returns the version after setting {@code key} to {@code value} in {@code version}. */
+    Version set(Version version, Table table, HasUniqueId key, @Nullable Object value) {
+        checkout(version);
+        Version next = new Version(version, table, key, put(table, key, value), value);
+        current = next;
+        return next;
+    }
+
+    /** Returns the writes that lead from {@code earlier} to {@code later}, or null if it is not an ancestor. */
+    @Nullable
+    Writes writesBetween(Version earlier, Version later) {
+        List<Version> path = new ArrayList<>();
+        for (Version version = later; version != earlier; version = version.parent) {
+            if (version == null) {
+                return null;
+            }
+            path.add(version);
+        }
+        return new Writes(path);
+    }
+
+    /** Returns the version after making {@code writes} in {@code version}. */
+    Version replay(Version version, Writes writes) {
+        Version result = version;
+        for (int i = 0; i < writes.keys.length; i++) {
+            result = set(result, writes.tables[i], writes.keys[i], writes.values[i]);
+        }
+        return result;
+    }
+
+    private void checkout(Version target) {
+        if (target == current) {
+            return;
+        }
+        Version from = current;
+        Version to = target;
+        List<Version> toRedo = new ArrayList<>();
+        while (from.depth > to.depth) {
+            from = undo(from);
+        }
+        while (to.depth > from.depth) {
+            toRedo.add(to);
+            to = parent(to);
+        }
+        while (from != to) {
+            from = undo(from);
+            toRedo.add(to);
+            to = parent(to);
+        }
+        for (int i = toRedo.size() - 1; i >= 0; i--) {
+            Version version = toRedo.get(i);
+            put(version.table, nonRootKey(version), version.newValue);
+        }
+        current = target;
+    }
+
+    private Version undo(Version version) {
+        put(version.table, nonRootKey(version), version.oldValue);
+        return parent(version);
+    }
+
+    @Nullable
+    private Object put(Table table, HasUniqueId key, @Nullable Object value) {
+        int id = key.id();
+        if (id < 0) {
+            // Keyed by identity: breaks are value objects, but each one has its own state.
+            Map<HasUniqueId, Object> values = unscopedTables.computeIfAbsent(table, _table -> new IdentityHashMap<>());
+            return value == null ? values.remove(key) : values.put(key, value);
+        }
+        Object[] values = tables[table.ordinal()];
+        if (values == null || id >= values.length) {
+            int capacity = Math.max(id + 1, values == null ? MIN_CAPACITY : 2 * values.length);
+            values = values == null ? new Object[capacity] : Arrays.copyOf(values, capacity);
+            tables[table.ordinal()] = values;
+        }
+        Object oldValue = values[id];
+        values[id] = value;
+        return oldValue;
+    }
+
+    private static Version parent(Version version) {
+        if (version.parent == null) {
+            throw new IllegalStateException("Versions of different format runs were mixed");
+        }
+        return version.parent;
+    }
+
+    private static HasUniqueId nonRootKey(Version version) {
+        if (version.key == null) {
+            throw new IllegalStateException("Versions of different format runs were mixed");
+        }
+        return version.key;
+    }
+
+    /** A node in the tree of versions of the tables, made by setting one key. */
+    static final class Version {
+        @Nullable
+        private final Version parent;
+
+        private final int depth;
+        private final Table table;
+
+        @Nullable
+        private final HasUniqueId key;
+
+        @Nullable
+        private final Object oldValue;
+
+        @Nullable
+        private final Object newValue;
+
+        private Version(
+                @Nullable Version parent,
+                Table table,
+                @Nullable HasUniqueId key,
+                @Nullable Object oldValue,
+                @Nullable Object newValue) {
+            this.parent = parent;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+            this.table = table;
+            this.key = key;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+    }
+
+    /** A sequence of writes, detached from the versions that made them so that it can be kept cheaply. */
+    static final class Writes {
+        private final Table[] tables;
+        private final HasUniqueId[] keys;
+        private final Object[] values;
+
+        Writes(Table[] tables, HasUniqueId[] keys, Object[] values) {
+            this.tables = tables;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        /** Copies the writes of {@code versions}, which are ordered from the latest to the earliest. */
+        private Writes(List<Version> versions) {
+            int size = versions.size();
+            this.tables = new Table[size];
+            this.keys = new HasUniqueId[size];
+            this.values = new Object[size];
+            for (int i = 0; i < size; i++) {
+                Version version = versions.get(size - 1 - i);
+                tables[i] = version.table;
+                keys[i] = nonRootKey(version);
+                values[i] = version.newValue;
+            }
+        }
+
+        int size() {
+            return keys.length;
+        }
+
+        Table table(int index) {
+            return tables[index];
+        }
+
+        HasUniqueId key(int index) {
+            return keys[index];
+        }
+
+        @Nullable
+        Object value(int index) {
+            return values[index];
+        }
+    }
+}
@@ -105,13 +105,13 @@ public final class Token extends Doc implements Op {
     }
 
     @Override
-    protected float computeWidth() {
+    protected int computeWidth() {
         return token.getTok().length();
     }
 
     @Override
-    protected String computeFlat() {
-        return token.getTok().getOriginalText();
+    protected void appendFlat(StringBuilder builder) {
+        builder.append(token.getTok().getOriginalText());
     }
 
     @Override
@@ -45,6 +45,15 @@ final class CommandLineOptions {
     private final Optional<String> assumeFilename;
     private final boolean reflowLongStrings;
     private final boolean outputReplacements;
+    private final boolean worker;
+    private final Optional<String> cacheDir;
+    private final ImmutableList<String> includes;
+    private final ImmutableList<String> excludes;
+    private final Optional<String> filesFrom;
+    private final boolean respectGitignore;
+    private final Optional<Integer> threads;
+    private final boolean stats;
+    private final boolean parallelLayout;
 
     CommandLineOptions(
             ImmutableList<String> files,
@@ -65,7 +74,16 @@ final class CommandLineOptions {
             boolean setExitIfChanged,
             Optional<String> assumeFilename,
             boolean reflowLongStrings,
-            boolean outputReplacements) {
+            boolean outputReplacements,
+            boolean worker,
+            Optional<String> cacheDir,
+            ImmutableList<String> includes,
+            ImmutableList<String> excludes,
+            Optional<String> filesFrom,
+            boolean respectGitignore,
+            Optional<Integer> threads,
+            boolean stats,
+            boolean parallelLayout) {
         this.files = files;
         this.inPlace = inPlace;
         this.lines = lines;
@@ -85,9 +103,18 @@ final class CommandLineOptions {
         this.assumeFilename = assumeFilename;
         this.reflowLongStrings = reflowLongStrings;
         this.outputReplacements = outputReplacements;
+        this.worker = worker;
+        this.cacheDir = cacheDir;
+        this.includes = includes;
+        this.excludes = excludes;
+        this.filesFrom = filesFrom;
+        this.respectGitignore = respectGitignore;
+        this.threads = threads;
+        this.stats = stats;
+        this.parallelLayout = parallelLayout;
     }
 
-    /** The files to format. */
+    /** The files and directories to format. */
     ImmutableList<String> files() {
         return files;
     }
@@ -185,6 +212,51 @@ final class CommandLineOptions {
         return outputReplacements;
     }
 
+    /** Run as a long-lived worker, serving formatting requests read from stdin. */
+    boolean worker() {
+        return worker;
+    }
+
+    /** Directory of a persistent cache of already formatted file contents, which are then skipped. */
+    Optional<String> cacheDir() {
+        return cacheDir;
+    }
+
+    /** Globs selecting the files to format in directories, relative to the directory. Defaults to all Java files. */
+    ImmutableList<String> includes() {
+        return includes;
+    }
+
+    /** Globs of files and directories to skip, relative to the directory they were found in. */
+    ImmutableList<String> excludes() {
+        return excludes;
+    }
+
+    /** A file listing further files to format, one per line, or {@code -} to read the list from stdin. */
+    Optional<String> filesFrom() {
+        return filesFrom;
+    }
+
+    /** Skip files and directories in directories that are ignored by git. */
+    boolean respectGitignore() {
+        return respectGitignore;
+    }
+
+    /** The number of files to format in parallel. Defaults to the number of available processors. */
+    Optional<Integer> threads() {
+        return threads;
+    }
+
+    /** Print what formatting each file took to stderr, as one line of JSON per file. */
+    boolean stats() {
+        return stats;
+    }
+
+    /** Lay out the large members of each file in parallel, see {@link JavaFormatterOptions#parallelLayout()}. */
+    boolean parallelLayout() {
+        return parallelLayout;
+    }
+
     static Builder builder() {
         return new Builder();
     }
@@ -196,6 +268,8 @@ final class CommandLineOptions {
         private final ImmutableRangeSet.Builder<Integer> characterRanges = ImmutableRangeSet.builder();
         private final ImmutableList.Builder<Integer> offsets = ImmutableList.builder();
         private final ImmutableList.Builder<Integer> lengths = ImmutableList.builder();
+        private final ImmutableList.Builder<String> includes = ImmutableList.builder();
+        private final ImmutableList.Builder<String> excludes = ImmutableList.builder();
         private boolean inPlace = false;
         private boolean aosp = false;
         private boolean palantirStyle = false;
@@ -210,6 +284,13 @@ final class CommandLineOptions {
         private Optional<String> assumeFilename = Optional.empty();
         private boolean reflowLongStrings = true;
         private boolean outputReplacements = false;
+        private boolean worker = false;
+        private Optional<String> cacheDir = Optional.empty();
+        private Optional<String> filesFrom = Optional.empty();
+        private boolean respectGitignore = false;
+        private Optional<Integer> threads = Optional.empty();
+        private boolean stats = false;
+        private boolean parallelLayout = false;
 
         private Builder() {}
 
@@ -305,6 +386,51 @@ final class CommandLineOptions {
             return this;
         }
 
+        Builder worker(boolean worker) {
+            this.worker = worker;
+            return this;
+        }
+
+        Builder cacheDir(String cacheDir) {
+            this.cacheDir = Optional.of(cacheDir);
+            return this;
+        }
+
+        Builder addInclude(String include) {
+            includes.add(include);
+            return this;
+        }
+
+        Builder addExclude(String exclude) {
+            excludes.add(exclude);
+            return this;
+        }
+
+        Builder filesFrom(String filesFrom) {
+            this.filesFrom = Optional.of(filesFrom);
+            return this;
+        }
+
+        Builder respectGitignore(boolean respectGitignore) {
+            this.respectGitignore = respectGitignore;
+            return this;
+        }
+
+        Builder threads(Integer threads) {
+            this.threads = Optional.of(threads);
+            return this;
+        }
+
+        Builder stats(boolean stats) {
+            this.stats = stats;
+            return this;
+        }
+
+        Builder parallelLayout(boolean parallelLayout) {
+            this.parallelLayout = parallelLayout;
+            return this;
+        }
+
         CommandLineOptions build() {
             Preconditions.checkArgument(!aosp || !palantirStyle, "Cannot use both aosp and palantir style");
             return new CommandLineOptions(
@@ -326,7 +452,16 @@ final class CommandLineOptions {
                     setExitIfChanged,
                     assumeFilename,
                     reflowLongStrings,
-                    outputReplacements);
+                    outputReplacements,
+                    worker,
+                    cacheDir,
+                    includes.build(),
+                    excludes.build(),
+                    filesFrom,
+                    respectGitignore,
+                    threads,
+                    stats,
+                    parallelLayout);
         }
     }
 }
@@ -137,6 +137,33 @@ final class CommandLineOptionsParser {
                 case "--output-replacements":
                     optionsBuilder.outputReplacements(true);
                     break;
+                case "--worker":
+                    optionsBuilder.worker(true);
+                    break;
+                case "--cache-dir":
+                    optionsBuilder.cacheDir(getValue(flag, it, value));
+                    break;
+                case "--include":
+                    optionsBuilder.addInclude(getValue(flag, it, value));
+                    break;
+                case "--exclude":
+                    optionsBuilder.addExclude(getValue(flag, it, value));
+                    break;
+                case "--files-from":
+                    optionsBuilder.filesFrom(getValue(flag, it, value));
+                    break;
+                case "--respect-gitignore":
+                    optionsBuilder.respectGitignore(true);
+                    break;
+                case "--threads":
+                    optionsBuilder.threads(parseInteger(it, flag, value));
+                    break;
+                case "--stats":
+                    optionsBuilder.stats(true);
+                    break;
+                case "--parallel-layout":
+                    optionsBuilder.parallelLayout(true);
+                    break;
                 default:
                     throw new IllegalArgumentException("unexpected flag: " + flag);
             }
@@ -0,0 +1,66 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.util.Context;
+import javax.annotation.Nullable;
+
+/**
+ * Remembers the last javac parse of a single file, so that the passes of the formatting pipeline (formatting, removing
+ * unused imports, reflowing strings) only re-parse the source once its text has actually changed. For files that are
+ * already formatted, this means one parse instead of one per pass.
+ *
+ * <p>Only parses with {@code allowStringFolding=false} are cached, as that's what all passes except
+ * {@link StringWrapper}'s AST equality check use. Not thread-safe; use one instance per file being formatted. A parse
+ * is only reused on the thread that made it, as its context belongs to that thread's {@link JavacSession}.
+ */
+final class CompilationUnitCache {
+    @Nullable
+    private Thread thread;
+
+    @Nullable
+    private String text;
+
+    @Nullable
+    private Context context;
+
+    @Nullable
+    private JCCompilationUnit unit;
+
+    /** Parses {@code source}, or returns the previous compilation unit if it was parsed from identical text. */
+    JCCompilationUnit parse(String source) throws FormatterException {
+        if (unit != null && Thread.currentThread() == thread && source.equals(text)) {
+            return unit;
+        }
+        JavacSession session = JavacSession.forThread(/* allowStringFolding= */ false);
+        JCCompilationUnit newUnit = session.parse(source);
+        this.thread = Thread.currentThread();
+        this.text = source;
+        this.context = session.context();
+        this.unit = newUnit;
+        return newUnit;
+    }
+
+    /** The javac context that the last compilation unit returned by {@link #parse} was parsed in. */
+    Context context() {
+        if (context == null) {
+            throw new IllegalStateException("Nothing has been parsed yet");
+        }
+        return context;
+    }
+}
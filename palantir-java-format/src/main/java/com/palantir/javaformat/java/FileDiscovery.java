@@ -0,0 +1,238 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Expands the file arguments of {@link Main} into the Java files to format. Directory arguments are walked
+ * recursively, keeping the files that match the {@code --include} globs (by default, all {@code .java} files) and none
+ * of the {@code --exclude} globs. Globs are matched against paths relative to the directory argument; excluded
+ * directories are not descended into. With {@code --respect-gitignore}, files and directories ignored by git are
+ * skipped as well. File arguments go through the same filters, with the globs matched against the path as given, so
+ * that passing a list of changed files formats the same files as walking their directory would.
+ *
+ * <p>A glob that starts with {@code **}{@code /} also matches paths without any leading directories, as in
+ * {@code .gitignore} files: {@code **}{@code /*.java} matches {@code Foo.java} as well as {@code src/Foo.java}.
+ *
+ * <p>Directories are listed in parallel on the formatting executor, ahead of when their files are needed, so discovery
+ * overlaps with formatting. Files are still produced in a deterministic order: arguments in order, and within a
+ * directory, its files in sorted order followed by each of its subdirectories in sorted order.
+ */
+final class FileDiscovery {
+    private static final PathMatcher JAVA_FILES = path -> path.getFileName().toString().endsWith(".java");
+    private static final String ANY_DIRECTORIES = "**/";
+
+    private final ExecutorService executor;
+    private final PrintWriter errWriter;
+    private final ImmutableList<PathMatcher> includes;
+    private final ImmutableList<PathMatcher> excludes;
+    private final boolean respectGitignore;
+    private boolean hadErrors = false;
+
+    FileDiscovery(CommandLineOptions parameters, ExecutorService executor, PrintWriter errWriter) {
+        this.executor = executor;
+        this.errWriter = errWriter;
+        this.includes = parameters.includes().isEmpty()
+                ? ImmutableList.of(JAVA_FILES)
+                : parameters.includes().stream().map(FileDiscovery::glob).collect(ImmutableList.toImmutableList());
+        this.excludes =
+                parameters.excludes().stream().map(FileDiscovery::glob).collect(ImmutableList.toImmutableList());
+        this.respectGitignore = parameters.respectGitignore();
+    }
+
+    /**
+     * Lazily expands {@code fileNames} into the files to format. Problems with individual arguments are reported to the
+     * error writer, and then skipped.
+     */
+    Iterator<Path> files(Iterator<String> fileNames) {
+        return new Walk(fileNames);
+    }
+
+    /** Returns true if any file argument could not be expanded. */
+    boolean hadErrors() {
+        return hadErrors;
+    }
+
+    /** Compiles an {@code --include} or {@code --exclude} glob, see the class javadoc for how it matches. */
+    static PathMatcher glob(String pattern) {
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        if (!pattern.startsWith(ANY_DIRECTORIES)) {
+            return matcher;
+        }
+        // The glob syntax needs at least one directory before the separator, which would miss top-level files.
+        PathMatcher topLevel = glob(pattern.substring(ANY_DIRECTORIES.length()));
+        return path -> matcher.matches(path) || topLevel.matches(path);
+    }
+
+    private static boolean matchesAny(List<PathMatcher> matchers, Path path) {
+        return matchers.stream().anyMatch(matcher -> matcher.matches(path));
+    }
+
+    private final class Walk extends AbstractIterator<Path> {
+        private final Iterator<String> fileNames;
+        private final Deque<Path> ready = new ArrayDeque<>();
+        private final Deque<Map.Entry<Path, Future<Listing>>> pending = new ArrayDeque<>();
+
+        Walk(Iterator<String> fileNames) {
+            this.fileNames = fileNames;
+        }
+
+        @Override
+        protected Path computeNext() {
+            while (true) {
+                if (!ready.isEmpty()) {
+                    return ready.removeFirst();
+                }
+                if (!pending.isEmpty()) {
+                    expand(pending.removeFirst());
+                } else if (fileNames.hasNext()) {
+                    addFileName(fileNames.next());
+                } else {
+                    return endOfData();
+                }
+            }
+        }
+
+        private void addFileName(String fileName) {
+            Path path = Paths.get(fileName);
+            if (Files.isDirectory(path)) {
+                try {
+                    GitIgnore ignore = respectGitignore ? GitIgnore.forAncestorsOf(path) : GitIgnore.EMPTY;
+                    pending.addLast(list(path, path, ignore));
+                } catch (IOException e) {
+                    reportError(path, e);
+                }
+            } else if (!fileName.endsWith(".java")) {
+                errWriter.println("Skipping non-Java file: " + fileName);
+            } else {
+                try {
+                    if (isSelected(path)) {
+                        // Not checked for existence, so that a missing file is reported when it is read.
+                        ready.addLast(path);
+                    }
+                } catch (IOException e) {
+                    errWriter.println(path + ": could not read .gitignore: " + e.getMessage());
+                    hadErrors = true;
+                }
+            }
+        }
+
+        private boolean isSelected(Path file) throws IOException {
+            return matchesAny(includes, file)
+                    && !matchesAny(excludes, file)
+                    && !(respectGitignore && GitIgnore.isIgnoredInRepository(file));
+        }
+
+        private void expand(Map.Entry<Path, Future<Listing>> directory) {
+            Listing listing;
+            try {
+                listing = directory.getValue().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                reportError(directory.getKey(), e.getCause());
+                return;
+            }
+            ready.addAll(listing.files);
+            // Start listing all subdirectories straight away, but walk them in order.
+            List<Map.Entry<Path, Future<Listing>>> subdirectories = new ArrayList<>();
+            for (Path subdirectory : listing.subdirectories) {
+                subdirectories.add(list(listing.root, subdirectory, listing.ignore));
+            }
+            Lists.reverse(subdirectories).forEach(pending::addFirst);
+        }
+
+        private Map.Entry<Path, Future<Listing>> list(Path root, Path directory, GitIgnore parentIgnore) {
+            return Maps.immutableEntry(directory, executor.submit(() -> listDirectory(root, directory, parentIgnore)));
+        }
+
+        private void reportError(Path path, Throwable e) {
+            errWriter.println(path + ": could not list directory: " + e.getMessage());
+            hadErrors = true;
+        }
+    }
+
+    private Listing listDirectory(Path root, Path directory, GitIgnore parentIgnore) throws IOException {
+        GitIgnore ignore = respectGitignore ? parentIgnore.withRulesFrom(directory) : parentIgnore;
+        List<Path> files = new ArrayList<>();
+        List<Path> subdirectories = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                // Symbolic links are not followed, to avoid cycles and writing outside of the tree.
+                BasicFileAttributes attributes =
+                        Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                boolean isDirectory = attributes.isDirectory();
+                if (!isDirectory && !attributes.isRegularFile()) {
+                    continue;
+                }
+                Path relative = root.relativize(entry);
+                if (matchesAny(excludes, relative) || ignore.isIgnored(entry, isDirectory)) {
+                    continue;
+                }
+                if (isDirectory) {
+                    if (!(respectGitignore && entry.getFileName().toString().equals(".git"))) {
+                        subdirectories.add(entry);
+                    }
+                } else if (matchesAny(includes, relative)) {
+                    files.add(entry);
+                }
+            }
+        }
+        Collections.sort(files);
+        Collections.sort(subdirectories);
+        return new Listing(root, files, subdirectories, ignore);
+    }
+
+    private static final class Listing {
+        private final Path root;
+        private final List<Path> files;
+        private final List<Path> subdirectories;
+        private final GitIgnore ignore;
+
+        Listing(Path root, List<Path> files, List<Path> subdirectories, GitIgnore ignore) {
+            this.root = root;
+            this.files = files;
+            this.subdirectories = subdirectories;
+            this.ignore = ignore;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import com.google.common.collect.TreeRangeSet;
 import com.palantir.javaformat.Utils;
+import com.palantir.javaformat.java.FormatListener.Phase;
 import java.util.concurrent.Callable;
 
 /** Encapsulates information about a file to be formatted, including which parts of the file to format. */
@@ -33,11 +34,24 @@ class FormatFileCallable implements Callable<String> {
     private final String input;
     private final CommandLineOptions parameters;
     private final JavaFormatterOptions options;
+    private final FormatListener listener;
+    private final LayoutObserver layoutObserver;
 
     public FormatFileCallable(CommandLineOptions parameters, String input, JavaFormatterOptions options) {
+        this(parameters, input, options, FormatListener.none(), LayoutObserver.none());
+    }
+
+    FormatFileCallable(
+            CommandLineOptions parameters,
+            String input,
+            JavaFormatterOptions options,
+            FormatListener listener,
+            LayoutObserver layoutObserver) {
         this.input = input;
         this.parameters = parameters;
         this.options = options;
+        this.listener = listener;
+        this.layoutObserver = layoutObserver;
     }
 
     @Override
@@ -46,7 +60,8 @@ class FormatFileCallable implements Callable<String> {
             return fixImports(input);
         }
 
-        Formatter formatter = Formatter.createFormatter(options);
+        Formatter formatter =
+                Formatter.createFormatter(options).withListener(listener).withLayoutObserver(layoutObserver);
         if (parameters.outputReplacements()) {
             return formatReplacements(formatter);
         }
@@ -64,21 +79,31 @@ class FormatFileCallable implements Callable<String> {
     }
 
     private String formatFile(Formatter formatter) throws FormatterException {
-        String formatted = formatter.formatSource(input, characterRanges(input).asRanges());
-        formatted = fixImports(formatted);
+        // Shared between the passes below, so that we only re-parse once the text has actually changed.
+        CompilationUnitCache compilationUnitCache = new CompilationUnitCache();
+        String formatted = formatter.formatSource(input, characterRanges(input).asRanges(), compilationUnitCache);
+        formatted = fixImports(formatted, compilationUnitCache);
         if (parameters.reflowLongStrings()) {
-            formatted = StringWrapper.wrap(options.maxLineLength(), formatted, formatter);
+            long start = System.nanoTime();
+            formatted = StringWrapper.wrap(options.maxLineLength(), formatted, formatter, compilationUnitCache);
+            Formatter.phaseDone(listener, Phase.REFLOW_STRINGS, start);
         }
         return formatted;
     }
 
     private String fixImports(String input) throws FormatterException {
+        return fixImports(input, new CompilationUnitCache());
+    }
+
+    private String fixImports(String input, CompilationUnitCache compilationUnitCache) throws FormatterException {
+        long start = System.nanoTime();
         if (parameters.removeUnusedImports()) {
-            input = RemoveUnusedImports.removeUnusedImports(input);
+            input = RemoveUnusedImports.removeUnusedImports(input, compilationUnitCache);
         }
         if (parameters.sortImports()) {
             input = ImportOrderer.reorderImports(input, options.style());
         }
+        Formatter.phaseDone(listener, Phase.FIX_IMPORTS, start);
         return input;
     }
 
@@ -0,0 +1,43 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import com.google.common.collect.ImmutableList;
+
+/** The {@link Replacement}s that format a file, and whether the layout search ran out of its {@link FormatBudget}. */
+public final class FormatResult {
+    private final ImmutableList<Replacement> replacements;
+    private final boolean degraded;
+
+    FormatResult(ImmutableList<Replacement> replacements, boolean degraded) {
+        this.replacements = replacements;
+        this.degraded = degraded;
+    }
+
+    /** The replacements, sorted from low index to high index, without overlaps. */
+    public ImmutableList<Replacement> replacements() {
+        return replacements;
+    }
+
+    /**
+     * Whether the budget ran out, in which case some levels were broken without trying their alternative layouts. The
+     * output is still formatted, but it may change when the file is formatted again with a larger budget.
+     */
+    public boolean isDegraded() {
+        return degraded;
+    }
+}
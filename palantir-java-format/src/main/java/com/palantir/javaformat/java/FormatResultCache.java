@@ -0,0 +1,210 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * A persistent record of file contents that are known to already be formatted, so that {@link Main} can skip them on
+ * later runs.
+ *
+ * <p>Entries are keyed by a hash of the file content, the formatter version and every option that affects the output,
+ * so a hit means formatting the file would not change it. The index is a single compact binary file of (hash, last
+ * used) records, bounded to {@code maxEntries} by evicting the least recently used entries. Concurrent processes
+ * sharing a cache directory merge their updates under a file lock, and the index is replaced atomically so readers
+ * never see a partially written file.
+ */
+final class FormatResultCache {
+    private static final int MAGIC = 0x504a4643; // "PJFC"
+    private static final int FORMAT_VERSION = 1;
+    private static final int DEFAULT_MAX_ENTRIES = 200_000;
+    private static final String INDEX_FILE = "formatted.index";
+    private static final String LOCK_FILE = "formatted.lock";
+    private static final HashFunction HASH_FUNCTION = Hashing.sha256();
+
+    private final Path cacheDir;
+    private final int maxEntries;
+    private final String fingerprint;
+    private final Map<HashCode, Long> known;
+    private final Map<HashCode, Long> touched = new ConcurrentHashMap<>();
+
+    private FormatResultCache(Path cacheDir, int maxEntries, String fingerprint, Map<HashCode, Long> known) {
+        this.cacheDir = cacheDir;
+        this.maxEntries = maxEntries;
+        this.fingerprint = fingerprint;
+        this.known = known;
+    }
+
+    static FormatResultCache open(Path cacheDir, CommandLineOptions parameters, JavaFormatterOptions options)
+            throws IOException {
+        return open(cacheDir, DEFAULT_MAX_ENTRIES, fingerprint(parameters, options));
+    }
+
+    static FormatResultCache open(Path cacheDir, int maxEntries, String fingerprint) throws IOException {
+        Files.createDirectories(cacheDir);
+        return new FormatResultCache(cacheDir, maxEntries, fingerprint, readIndex(cacheDir.resolve(INDEX_FILE)));
+    }
+
+    /** Returns true if {@code content} is known to be unchanged by formatting. */
+    boolean isKnownFormatted(String content) {
+        HashCode key = key(content);
+        if (known.containsKey(key)) {
+            touched.put(key, System.currentTimeMillis());
+            return true;
+        }
+        return false;
+    }
+
+    /** Records that formatting {@code content} leaves it unchanged. */
+    void markFormatted(String content) {
+        touched.put(key(content), System.currentTimeMillis());
+    }
+
+    /** Merges the entries used or added by this run into the on-disk index. */
+    void save() throws IOException {
+        if (touched.isEmpty()) {
+            return;
+        }
+        try (FileChannel lockChannel =
+                FileChannel.open(cacheDir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Released when the channel is closed.
+            lockChannel.lock();
+            // Re-read under the lock to pick up entries written by other processes since we started.
+            Map<HashCode, Long> merged = readIndex(cacheDir.resolve(INDEX_FILE));
+            touched.forEach((key, lastUsed) -> merged.merge(key, lastUsed, Math::max));
+            writeIndex(evictLeastRecentlyUsed(merged));
+        }
+    }
+
+    private Map<HashCode, Long> evictLeastRecentlyUsed(Map<HashCode, Long> entries) {
+        if (entries.size() <= maxEntries) {
+            return entries;
+        }
+        return entries.entrySet().stream()
+                .sorted(Map.Entry.<HashCode, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(maxEntries)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    private HashCode key(String content) {
+        return HASH_FUNCTION
+                .newHasher()
+                .putString(fingerprint, UTF_8)
+                .putByte((byte) 0)
+                .putString(content, UTF_8)
+                .hash();
+    }
+
+    private static Map<HashCode, Long> readIndex(Path index) throws IOException {
+        Map<HashCode, Long> entries = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                // Unknown format, start from scratch.
+                return entries;
+            }
+            int size = in.readInt();
+            int hashBytes = HASH_FUNCTION.bits() / Byte.SIZE;
+            for (int i = 0; i < size; i++) {
+                byte[] hash = new byte[hashBytes];
+                in.readFully(hash);
+                entries.put(HashCode.fromBytes(hash), in.readLong());
+            }
+        } catch (NoSuchFileException e) {
+            // No index yet.
+        } catch (EOFException e) {
+            // Truncated index, e.g. from a full disk. Keep whatever we could read.
+        }
+        return entries;
+    }
+
+    private void writeIndex(Map<HashCode, Long> entries) throws IOException {
+        Path tmp = Files.createTempFile(cacheDir, INDEX_FILE, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<HashCode, Long> entry : entries.entrySet()) {
+                    out.write(entry.getKey().asBytes());
+                    out.writeLong(entry.getValue());
+                }
+            }
+            Files.move(
+                    tmp,
+                    cacheDir.resolve(INDEX_FILE),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Identifies the formatter build and every option that affects the formatted output. */
+    private static String fingerprint(CommandLineOptions parameters, JavaFormatterOptions options) {
+        return String.join(
+                ",",
+                formatterVersion(),
+                options.style().name(),
+                Boolean.toString(options.formatJavadoc()),
+                Boolean.toString(parameters.fixImportsOnly()),
+                Boolean.toString(parameters.sortImports()),
+                Boolean.toString(parameters.removeUnusedImports()),
+                Boolean.toString(parameters.reflowLongStrings()));
+    }
+
+    private static String formatterVersion() {
+        String version = Main.class.getPackage().getImplementationVersion();
+        if (version != null) {
+            return version;
+        }
+        // Not running from a released jar, so use the location and age of our own classes instead.
+        CodeSource codeSource = Main.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null) {
+            return "unknown";
+        }
+        try {
+            Path location = Paths.get(codeSource.getLocation().toURI());
+            return location + "@" + Files.getLastModifiedTime(location).toMillis();
+        } catch (URISyntaxException | IOException | RuntimeException e) {
+            return codeSource.getLocation().toString();
+        }
+    }
+}
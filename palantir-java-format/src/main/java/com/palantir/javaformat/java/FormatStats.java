@@ -0,0 +1,125 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Range;
+import com.palantir.javaformat.doc.MetricsSink;
+import com.palantir.javaformat.doc.MetricsSink.LevelCost;
+import com.palantir.javaformat.doc.Obs;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Where the time of formatting one file went: the time of each phase of the pipeline and, through a
+ * {@link MetricsSink}, what the layout search did. Collected for {@code --stats}, to find the files and constructs that
+ * are expensive to format.
+ *
+ * <p>The phase times add up over all the passes over the file, but only the first layout of the file is observed, as
+ * reformatting it to reflow strings lays out mostly the same levels again. Levels laid out in the background with
+ * {@link JavaFormatterOptions#parallelLayout()} are not counted.
+ *
+ * <p>Not thread-safe: one instance per file.
+ */
+final class FormatStats implements FormatListener, LayoutObserver {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int EXPENSIVE_LEVELS = 10;
+
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private final MetricsSink metricsSink = new MetricsSink();
+    private final ArrayNode expensiveLevels = OBJECT_MAPPER.createArrayNode();
+    private boolean observed = false;
+    private boolean levelsResolved = false;
+    private int bytes = -1;
+    private int tokens = -1;
+    private boolean degraded = false;
+
+    @Override
+    public void inputLexed(int inputBytes, int inputTokens) {
+        if (bytes < 0) {
+            this.bytes = inputBytes;
+            this.tokens = inputTokens;
+        }
+    }
+
+    @Override
+    public void phaseFinished(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    /** The node to lay out the file with, which counts what the layout search does the first time. */
+    @Override
+    public Obs.ExplorationNode observationNode() {
+        if (observed) {
+            return Obs.untraced();
+        }
+        observed = true;
+        return Obs.createCountingRoot(metricsSink);
+    }
+
+    /** Records the outcome of a layout search of {@code javaInput}, once it is done. */
+    @Override
+    public void layoutFinished(JavaInput javaInput, boolean isDegraded) {
+        degraded |= isDegraded;
+        if (levelsResolved) {
+            return;
+        }
+        levelsResolved = true;
+        for (LevelCost cost : metricsSink.mostExpensiveLevels(EXPENSIVE_LEVELS)) {
+            Range<Integer> tokenRange = cost.tokenRange();
+            if (tokenRange.isEmpty() || tokenRange.lowerEndpoint() < 0) {
+                continue;
+            }
+            ObjectNode level = expensiveLevels.addObject();
+            level.put("startLine", lineOfToken(javaInput, tokenRange.lowerEndpoint()));
+            level.put("endLine", lineOfToken(javaInput, tokenRange.upperEndpoint() - 1));
+            level.put("layouts", cost.layouts());
+        }
+    }
+
+    private static int lineOfToken(JavaInput javaInput, int tokenIndex) {
+        return javaInput.getLineNumber(javaInput.getToken(tokenIndex).getTok().getPosition());
+    }
+
+    /** Returns the stats as one line of JSON, for the file at {@code path}. */
+    String toJson(String path) {
+        ObjectNode json = OBJECT_MAPPER.createObjectNode();
+        json.put("file", path);
+        json.put("bytes", bytes);
+        json.put("tokens", tokens);
+        json.put("degraded", degraded);
+        ObjectNode phases = json.putObject("phaseMillis");
+        for (Phase phase : Phase.values()) {
+            phases.put(phase.name().toLowerCase(Locale.ROOT), phaseNanos[phase.ordinal()] / 1_000_000.0);
+        }
+        json.put("levels", metricsSink.levels());
+        ObjectNode explorations = json.putObject("explorations");
+        for (Map.Entry<String, Integer> entry : metricsSink.explorationsByBreakBehaviour().entrySet()) {
+            explorations.put(entry.getKey(), entry.getValue());
+        }
+        json.put("maxBranchingCoefficient", metricsSink.maxBranchingCoefficient());
+        json.set("expensiveLevels", expensiveLevels);
+        try {
+            return OBJECT_MAPPER.writeValueAsString(json);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to write stats", e);
+        }
+    }
+}
@@ -14,11 +14,9 @@
 
 package com.palantir.javaformat.java;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Utf8;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import com.google.common.io.CharSink;
@@ -32,27 +30,19 @@ import com.palantir.javaformat.OpsBuilder.OpsOutput;
 import com.palantir.javaformat.Utils;
 import com.palantir.javaformat.doc.Doc;
 import com.palantir.javaformat.doc.DocBuilder;
+import com.palantir.javaformat.doc.HasUniqueId;
+import com.palantir.javaformat.doc.LayoutBudget;
+import com.palantir.javaformat.doc.LayoutCache;
 import com.palantir.javaformat.doc.Level;
-import com.palantir.javaformat.doc.NoopSink;
 import com.palantir.javaformat.doc.Obs;
-import com.palantir.javaformat.doc.Obs.Sink;
 import com.palantir.javaformat.doc.State;
-import com.sun.tools.javac.file.JavacFileManager;
-import com.sun.tools.javac.parser.JavacParser;
-import com.sun.tools.javac.parser.ParserFactory;
+import com.palantir.javaformat.java.FormatListener.Phase;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
-import com.sun.tools.javac.util.Context;
-import com.sun.tools.javac.util.Log;
-import com.sun.tools.javac.util.Options;
 import java.io.IOException;
-import java.net.URI;
 import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import javax.annotation.Nullable;
 import javax.tools.Diagnostic;
-import javax.tools.DiagnosticCollector;
-import javax.tools.DiagnosticListener;
-import javax.tools.JavaFileObject;
-import javax.tools.SimpleJavaFileObject;
-import javax.tools.StandardLocation;
 
 /**
  * This is google-java-format, a new Java formatter that follows the Google Java Style Guide quite precisely---to the
@@ -92,10 +82,23 @@ public final class Formatter {
     private final JavaFormatterOptions options;
     private final boolean debugMode;
 
+    @SuppressWarnings("Immutable") // Listeners must be thread-safe, and are not part of the formatter's state.
+    private final FormatListener listener;
+
+    @SuppressWarnings("Immutable") // Like the listener.
+    private final LayoutObserver layoutObserver;
+
     @VisibleForTesting
     Formatter(JavaFormatterOptions options, boolean debugMode) {
+        this(options, debugMode, FormatListener.none(), LayoutObserver.none());
+    }
+
+    private Formatter(
+            JavaFormatterOptions options, boolean debugMode, FormatListener listener, LayoutObserver layoutObserver) {
         this.options = options;
         this.debugMode = debugMode;
+        this.listener = listener;
+        this.layoutObserver = layoutObserver;
     }
 
     /** A new Formatter instance with default options. */
@@ -107,6 +110,16 @@ public final class Formatter {
         return new Formatter(options, false);
     }
 
+    /** A formatter like this one, which reports the phases of every file that it formats to {@code newListener}. */
+    public Formatter withListener(FormatListener newListener) {
+        return new Formatter(options, debugMode, newListener, layoutObserver);
+    }
+
+    /** A formatter like this one, which lays out every file that it formats under {@code newLayoutObserver}. */
+    Formatter withLayoutObserver(LayoutObserver newLayoutObserver) {
+        return new Formatter(options, debugMode, listener, newLayoutObserver);
+    }
+
     /**
      * Construct a {@code Formatter} given a Java compilation unit. Parses the code; builds a {@link JavaInput} and the
      * corresponding {@link JavaOutput}.
@@ -120,85 +133,114 @@ public final class Formatter {
     static JavaOutput format(
             final JavaInput javaInput, JavaFormatterOptions options, CommentsHelper commentsHelper, boolean debugMode)
             throws FormatterException {
+        return format(javaInput, options, commentsHelper, debugMode, new CompilationUnitCache());
+    }
 
-        Context context = new Context();
-        Options.instance(context).put("allowStringFolding", "false");
+    static JavaOutput format(
+            final JavaInput javaInput,
+            JavaFormatterOptions options,
+            CommentsHelper commentsHelper,
+            boolean debugMode,
+            CompilationUnitCache compilationUnitCache)
+            throws FormatterException {
+        return format(
+                javaInput,
+                options,
+                commentsHelper,
+                debugMode,
+                compilationUnitCache,
+                null,
+                CancellationToken.never(),
+                FormatListener.none(),
+                LayoutObserver.none());
+    }
 
-        JCCompilationUnit unit = parseJcCompilationUnit(context, javaInput.getText());
+    static JavaOutput format(
+            final JavaInput javaInput,
+            JavaFormatterOptions options,
+            CommentsHelper commentsHelper,
+            boolean debugMode,
+            CompilationUnitCache compilationUnitCache,
+            @Nullable LayoutCache layoutCache,
+            CancellationToken cancellationToken,
+            FormatListener listener,
+            LayoutObserver layoutObserver)
+            throws FormatterException {
 
-        // Output the compilation unit.
-        javaInput.setCompilationUnit(unit);
-        OpsBuilder opsBuilder = new OpsBuilder(javaInput);
+        long start = System.nanoTime();
+        JCCompilationUnit unit = compilationUnitCache.parse(javaInput.getText());
+        start = phaseDone(listener, Phase.PARSE, start);
+        cancellationToken.throwIfCancelled();
+
+        // The ids of the docs are dense within the run, so that layout state can be kept in arrays.
+        try (HasUniqueId.Run _run = HasUniqueId.startRun()) {
+            // Output the compilation unit.
+            javaInput.setCompilationUnit(unit);
+            // The debug output shows the ops, so they are only streamed to the doc builder when it isn't wanted.
+            boolean streamOps = options.streamOps() && !debugMode;
+            DocBuilder docBuilder = new DocBuilder();
+            OpsBuilder opsBuilder =
+                    streamOps ? OpsBuilder.streamingTo(javaInput, docBuilder) : new OpsBuilder(javaInput);
+
+            JavaInputAstVisitor visitor = createVisitor(opsBuilder, options, cancellationToken);
+            visitor.scan(unit, null);
+            opsBuilder.sync(javaInput.getText().length());
+            opsBuilder.drain();
+            OpsOutput opsOutput = opsBuilder.build();
+            start = phaseDone(listener, Phase.VISIT, start);
+
+            Level doc = docBuilder.withOps(opsOutput.ops()).build();
+            start = phaseDone(listener, Phase.DOC_BUILD, start);
+
+            // Don't even allocate the observation nodes, let alone the JSON, if we're not going to write it out
+            JsonSink sink = debugMode ? new JsonSink() : null;
+
+            Obs.ExplorationNode observationNode =
+                    sink != null ? Obs.createRoot(sink) : layoutObserver.observationNode();
+            LayoutBudget budget = LayoutBudget.start(options.formatBudget(), cancellationToken);
+            // Which layouts get to spend a shared budget first would depend on thread timing, so a budgeted run lays
+            // out every level on this thread, which keeps its output deterministic.
+            boolean parallelLayout = options.parallelLayout() && options.formatBudget().isUnlimited();
+            State startingState =
+                    State.startingState(layoutCache, parallelLayout ? ForkJoinPool.commonPool() : null, budget);
+            State finalState =
+                    doc.computeBreaks(commentsHelper, options.maxLineLength(), startingState, observationNode);
+            start = phaseDone(listener, Phase.COMPUTE_BREAKS, start);
+
+            JavaOutput javaOutput = new JavaOutput(javaInput, opsOutput.inputMetadata());
+            doc.write(finalState, javaOutput);
+            javaOutput.flush();
+            if (budget.isExhausted()) {
+                javaOutput.markDegraded();
+            }
+            phaseDone(listener, Phase.WRITE, start);
+            layoutObserver.layoutFinished(javaInput, budget.isExhausted());
 
-        JavaInputAstVisitor visitor;
-        if (getRuntimeVersion() >= 14) {
-            try {
-                visitor = Class.forName("com.palantir.javaformat.java.java14.Java14InputAstVisitor")
-                        .asSubclass(JavaInputAstVisitor.class)
-                        .getConstructor(OpsBuilder.class, int.class)
-                        .newInstance(opsBuilder, options.indentationMultiplier());
-            } catch (ReflectiveOperationException e) {
-                throw new RuntimeException(e.getMessage(), e);
+            if (sink != null) {
+                DebugRenderer.render(javaInput, opsOutput, doc, finalState, javaOutput, sink.getOutput());
             }
-        } else {
-            visitor = new JavaInputAstVisitor(opsBuilder, options.indentationMultiplier());
+            return javaOutput;
         }
+    }
 
-        visitor.scan(unit, null);
-        opsBuilder.sync(javaInput.getText().length());
-        opsBuilder.drain();
-        OpsOutput opsOutput = opsBuilder.build();
-
-        Level doc = new DocBuilder().withOps(opsOutput.ops()).build();
-
-        // Don't even allocate all those JSON nodes if we're not going to write it out
-        Sink sink = debugMode ? new JsonSink() : new NoopSink();
-
-        Obs.ExplorationNode observationNode = Obs.createRoot(sink);
-        State finalState =
-                doc.computeBreaks(commentsHelper, options.maxLineLength(), State.startingState(), observationNode);
-
-        JavaOutput javaOutput = new JavaOutput(javaInput, opsOutput.inputMetadata());
-        doc.write(finalState, javaOutput);
-        javaOutput.flush();
-
-        if (debugMode) {
-            DebugRenderer.render(javaInput, opsOutput, doc, finalState, javaOutput, sink.getOutput());
-        }
-        return javaOutput;
+    /** Creates the visitor that generates the ops for a compilation unit, supporting newer syntax where we can. */
+    static JavaInputAstVisitor createVisitor(OpsBuilder opsBuilder, JavaFormatterOptions options) {
+        return createVisitor(opsBuilder, options, CancellationToken.never());
     }
 
-    static JCCompilationUnit parseJcCompilationUnit(Context context, String sourceText) throws FormatterException {
-        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
-        context.put(DiagnosticListener.class, diagnostics);
-        Options.instance(context).put("--enable-preview", "true");
-        JCCompilationUnit unit;
-        JavacFileManager fileManager = new JavacFileManager(context, true, UTF_8);
-        try {
-            fileManager.setLocation(StandardLocation.PLATFORM_CLASS_PATH, ImmutableList.of());
-        } catch (IOException e) {
-            // impossible
-            throw new RuntimeException(e);
-        }
-        SimpleJavaFileObject source = new SimpleJavaFileObject(URI.create("source"), JavaFileObject.Kind.SOURCE) {
-            @Override
-            public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
-                return sourceText;
+    static JavaInputAstVisitor createVisitor(
+            OpsBuilder opsBuilder, JavaFormatterOptions options, CancellationToken cancellationToken) {
+        if (getRuntimeVersion() >= 14) {
+            try {
+                return Class.forName("com.palantir.javaformat.java.java14.Java14InputAstVisitor")
+                        .asSubclass(JavaInputAstVisitor.class)
+                        .getConstructor(OpsBuilder.class, int.class, CancellationToken.class)
+                        .newInstance(opsBuilder, options.indentationMultiplier(), cancellationToken);
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e.getMessage(), e);
             }
-        };
-        Log.instance(context).useSource(source);
-        ParserFactory parserFactory = ParserFactory.instance(context);
-        JavacParser parser = parserFactory.newParser(
-                sourceText, /*keepDocComments=*/ true, /*keepEndPos=*/ true, /*keepLineMap=*/ true);
-        unit = parser.parseCompilationUnit();
-        unit.sourcefile = source;
-
-        Iterable<Diagnostic<? extends JavaFileObject>> errorDiagnostics =
-                Iterables.filter(diagnostics.getDiagnostics(), Formatter::errorDiagnostic);
-        if (!Iterables.isEmpty(errorDiagnostics)) {
-            throw FormatterExceptions.fromJavacDiagnostics(errorDiagnostics);
         }
-        return unit;
+        return new JavaInputAstVisitor(opsBuilder, options.indentationMultiplier(), cancellationToken);
     }
 
     @VisibleForTesting
@@ -257,10 +299,17 @@ public final class Formatter {
      *     Style Guide - 3.3.3 Import ordering and spacing</a>
      */
     public String formatSourceAndFixImports(String input) throws FormatterException {
+        // Each pass only re-parses if the previous one actually changed the text.
+        CompilationUnitCache compilationUnitCache = new CompilationUnitCache();
+        long start = System.nanoTime();
         input = ImportOrderer.reorderImports(input, options.style());
-        input = RemoveUnusedImports.removeUnusedImports(input);
-        String formatted = formatSource(input);
-        formatted = StringWrapper.wrap(options.maxLineLength(), formatted, this);
+        input = RemoveUnusedImports.removeUnusedImports(input, compilationUnitCache);
+        phaseDone(listener, Phase.FIX_IMPORTS, start);
+        String formatted =
+                formatSource(input, ImmutableList.of(Range.closedOpen(0, input.length())), compilationUnitCache);
+        start = System.nanoTime();
+        formatted = StringWrapper.wrap(options.maxLineLength(), formatted, this, compilationUnitCache);
+        phaseDone(listener, Phase.REFLOW_STRINGS, start);
         return formatted;
     }
 
@@ -274,7 +323,17 @@ public final class Formatter {
      *     Style Guide - 3.3.3 Import ordering and spacing</a>
      */
     public String fixImports(String input) throws FormatterException {
-        return ImportOrderer.reorderImports(RemoveUnusedImports.removeUnusedImports(input), options.style());
+        long start = System.nanoTime();
+        String fixed = ImportOrderer.reorderImports(RemoveUnusedImports.removeUnusedImports(input), options.style());
+        phaseDone(listener, Phase.FIX_IMPORTS, start);
+        return fixed;
+    }
+
+    /** Reports the time since {@code startNanos} as the time of {@code phase}, and returns the time now. */
+    static long phaseDone(FormatListener listener, Phase phase, long startNanos) {
+        long now = System.nanoTime();
+        listener.phaseFinished(phase, now - startNanos);
+        return now;
     }
 
     /**
@@ -287,7 +346,13 @@ public final class Formatter {
      * @throws FormatterException if the input string cannot be parsed
      */
     public String formatSource(String input, Collection<Range<Integer>> characterRanges) throws FormatterException {
-        return Utils.applyReplacements(input, getFormatReplacements(input, characterRanges));
+        return formatSource(input, characterRanges, new CompilationUnitCache());
+    }
+
+    String formatSource(
+            String input, Collection<Range<Integer>> characterRanges, CompilationUnitCache compilationUnitCache)
+            throws FormatterException {
+        return Utils.applyReplacements(input, getFormatReplacements(input, characterRanges, compilationUnitCache));
     }
 
     /**
@@ -300,21 +365,89 @@ public final class Formatter {
      */
     public ImmutableList<Replacement> getFormatReplacements(String input, Collection<Range<Integer>> characterRanges)
             throws FormatterException {
+        return getFormatReplacements(input, characterRanges, new CompilationUnitCache());
+    }
+
+    ImmutableList<Replacement> getFormatReplacements(
+            String input, Collection<Range<Integer>> characterRanges, CompilationUnitCache compilationUnitCache)
+            throws FormatterException {
+        return getFormatResult(input, characterRanges, compilationUnitCache, null, CancellationToken.never())
+                .replacements();
+    }
+
+    /**
+     * Like {@link #getFormatReplacements(String, Collection)}, but gives up as soon as {@code cancellationToken} is
+     * cancelled.
+     *
+     * @param input the input compilation unit
+     * @param characterRanges the character ranges to reformat
+     * @param cancellationToken checked while parsing the input and laying out the output
+     * @return a list of {@link Replacement}s, sorted from low index to high index, without overlaps
+     * @throws FormatterException if the input string cannot be parsed
+     * @throws java.util.concurrent.CancellationException if {@code cancellationToken} was cancelled
+     */
+    public ImmutableList<Replacement> getFormatReplacements(
+            String input, Collection<Range<Integer>> characterRanges, CancellationToken cancellationToken)
+            throws FormatterException {
+        return getFormatResult(input, characterRanges, new CompilationUnitCache(), null, cancellationToken)
+                .replacements();
+    }
+
+    /**
+     * Like {@link #getFormatReplacements(String, Collection)}, and also reports whether the layout search ran out of
+     * the {@link FormatBudget} of the options.
+     *
+     * @param input the input compilation unit
+     * @param characterRanges the character ranges to reformat
+     * @return the {@link Replacement}s, and whether the output is degraded
+     * @throws FormatterException if the input string cannot be parsed
+     */
+    public FormatResult getFormatResult(String input, Collection<Range<Integer>> characterRanges)
+            throws FormatterException {
+        return getFormatResult(input, characterRanges, new CompilationUnitCache(), null, CancellationToken.never());
+    }
+
+    FormatResult getFormatResult(
+            String input,
+            Collection<Range<Integer>> characterRanges,
+            CompilationUnitCache compilationUnitCache,
+            @Nullable LayoutCache layoutCache,
+            CancellationToken cancellationToken)
+            throws FormatterException {
+        cancellationToken.throwIfCancelled();
+        long start = System.nanoTime();
         JavaInput javaInput = new JavaInput(input);
 
         // TODO(cushon): this is only safe because the modifier ordering doesn't affect whitespace,
         // and doesn't change the replacements that are output. This is not true in general for
         // 'de-linting' changes (e.g. import ordering).
         javaInput = ModifierOrderer.reorderModifiers(javaInput, characterRanges);
+        phaseDone(listener, Phase.LEX, start);
+        if (listener != FormatListener.none()) {
+            listener.inputLexed(Utf8.encodedLength(input), javaInput.getkN());
+        }
 
         JavaCommentsHelper commentsHelper = new JavaCommentsHelper(javaInput.getLineSeparator(), options);
         JavaOutput javaOutput;
         try {
-            javaOutput = format(javaInput, options, commentsHelper, debugMode);
+            javaOutput = format(
+                    javaInput,
+                    options,
+                    commentsHelper,
+                    debugMode,
+                    compilationUnitCache,
+                    layoutCache,
+                    cancellationToken,
+                    listener,
+                    layoutObserver);
         } catch (FormattingError e) {
             throw new FormatterException(e.diagnostics());
         }
+        start = System.nanoTime();
         RangeSet<Integer> tokenRangeSet = javaInput.characterRangesToTokenRanges(characterRanges);
-        return javaOutput.getFormatReplacements(tokenRangeSet);
+        FormatResult result =
+                new FormatResult(javaOutput.getFormatReplacements(tokenRangeSet), javaOutput.isDegraded());
+        phaseDone(listener, Phase.REPLACEMENTS, start);
+        return result;
     }
 }
@@ -20,24 +20,56 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Range;
 import com.palantir.javaformat.java.JavaFormatterOptions.Style;
 import java.util.Collection;
+import javax.annotation.Nullable;
 
 @AutoService(FormatterService.class)
 public final class FormatterServiceImpl implements FormatterService {
 
     private final Formatter formatter;
 
+    /** Set for the services of {@link #newDocumentSession()}, which format one document. */
+    @Nullable
+    private final FormattingSession session;
+
     public FormatterServiceImpl() {
-        JavaFormatterOptions options =
-                JavaFormatterOptions.builder().style(Style.PALANTIR).build();
-        formatter = Formatter.createFormatter(options);
+        this(Formatter.createFormatter(JavaFormatterOptions.builder().style(Style.PALANTIR).build()), null);
+    }
+
+    private FormatterServiceImpl(Formatter formatter, @Nullable FormattingSession session) {
+        this.formatter = formatter;
+        this.session = session;
+    }
+
+    @Override
+    public FormatterService newDocumentSession() {
+        return new FormatterServiceImpl(formatter, new FormattingSession(formatter));
+    }
+
+    @Override
+    public FormatterService withListener(FormatListener listener) {
+        Formatter newFormatter = formatter.withListener(listener);
+        return new FormatterServiceImpl(newFormatter, session != null ? new FormattingSession(newFormatter) : null);
     }
 
     @Override
     public ImmutableList<Replacement> getFormatReplacements(String text, Collection<Range<Integer>> toRanges)
             throws FormatterException {
+        if (session != null) {
+            return session.getFormatReplacements(text, toRanges);
+        }
         return formatter.getFormatReplacements(text, toRanges);
     }
 
+    @Override
+    public ImmutableList<Replacement> getFormatReplacements(
+            String text, Collection<Range<Integer>> toRanges, CancellationToken cancellationToken)
+            throws FormatterException {
+        if (session != null) {
+            return session.getFormatReplacements(text, toRanges, cancellationToken);
+        }
+        return formatter.getFormatReplacements(text, toRanges, cancellationToken);
+    }
+
     @Override
     public String formatSourceReflowStringsAndFixImports(String input) throws FormatterException {
         return formatter.formatSourceAndFixImports(input);
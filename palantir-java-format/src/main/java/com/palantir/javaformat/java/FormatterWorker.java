@@ -0,0 +1,150 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Serves formatting requests from a long-lived JVM, so that callers like the bootstrapping formatter don't pay JVM
+ * startup and JIT warmup for every format.
+ *
+ * <p>Requests and replies are frames consisting of the payload length in chars as a decimal number, a newline, and
+ * then the JSON payload itself. The worker first writes a greeting {@code {"protocol": 1}} with the
+ * {@link #PROTOCOL_VERSION}, so that callers can tell it apart from an implementation that does not know
+ * {@code --worker}. A request is {@code {"args": [...], "input": "..."}} where {@code args} are regular command line
+ * arguments that format stdin, and the reply is {@code {"exitCode": 0, "stdout": "...", "stderr": "..."}}. The worker
+ * exits once its input is closed.
+ */
+final class FormatterWorker {
+    /** The version of the protocol, which changes whenever requests or replies do. */
+    static final int PROTOCOL_VERSION = 1;
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder().build();
+
+    private final Reader in;
+    private final PrintWriter out;
+
+    FormatterWorker(InputStream in, PrintWriter out) {
+        this.in = new BufferedReader(new InputStreamReader(in, UTF_8));
+        this.out = out;
+    }
+
+    /** Serves requests until stdin is closed. */
+    int serve() throws IOException {
+        ObjectNode greeting = MAPPER.createObjectNode();
+        greeting.put("protocol", PROTOCOL_VERSION);
+        writeFrame(out, MAPPER.writeValueAsString(greeting));
+        while (true) {
+            Optional<String> request = readFrame(in);
+            if (request.isEmpty()) {
+                return 0;
+            }
+            writeFrame(out, handle(request.get()));
+        }
+    }
+
+    private static String handle(String request) throws IOException {
+        JsonNode node = MAPPER.readTree(request);
+        List<String> args = new ArrayList<>();
+        node.get("args").forEach(arg -> args.add(arg.asText()));
+        String input = node.get("input").asText();
+
+        StringWriter stdout = new StringWriter();
+        StringWriter stderr = new StringWriter();
+        int exitCode;
+        try (PrintWriter outWriter = new PrintWriter(stdout);
+                PrintWriter errWriter = new PrintWriter(stderr)) {
+            Main main = new Main(outWriter, errWriter, new ByteArrayInputStream(input.getBytes(UTF_8)));
+            try {
+                exitCode = main.format(args.toArray(new String[0]));
+            } catch (UsageException e) {
+                // Mirror Main#main, which reports usage errors without failing.
+                errWriter.print(e.getMessage());
+                exitCode = 0;
+            } catch (RuntimeException e) {
+                // A one-shot formatter process would die here; keep the worker alive and report the failure instead.
+                e.printStackTrace(errWriter);
+                exitCode = 1;
+            }
+        }
+
+        ObjectNode reply = MAPPER.createObjectNode();
+        reply.put("exitCode", exitCode);
+        reply.put("stdout", stdout.toString());
+        reply.put("stderr", stderr.toString());
+        return MAPPER.writeValueAsString(reply);
+    }
+
+    /** Reads the next frame, or returns empty if the stream was closed between frames. */
+    static Optional<String> readFrame(Reader reader) throws IOException {
+        int length = 0;
+        int digits = 0;
+        while (true) {
+            int c = reader.read();
+            if (c == -1) {
+                if (digits == 0) {
+                    return Optional.empty();
+                }
+                throw new EOFException("Stream closed while reading frame length");
+            }
+            if (c == '\n') {
+                break;
+            }
+            if (c < '0' || c > '9') {
+                throw new IOException("Invalid frame length character: " + (char) c);
+            }
+            length = Math.addExact(Math.multiplyExact(length, 10), c - '0');
+            digits++;
+        }
+
+        char[] payload = new char[length];
+        int read = 0;
+        while (read < length) {
+            int count = reader.read(payload, read, length - read);
+            if (count == -1) {
+                throw new EOFException("Stream closed while reading frame of length " + length);
+            }
+            read += count;
+        }
+        return Optional.of(new String(payload));
+    }
+
+    static void writeFrame(Writer writer, String payload) throws IOException {
+        writer.write(Integer.toString(payload.length()));
+        writer.write('\n');
+        writer.write(payload);
+        writer.flush();
+    }
+}
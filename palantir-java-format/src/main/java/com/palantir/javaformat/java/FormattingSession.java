@@ -0,0 +1,102 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import com.palantir.javaformat.Utils;
+import com.palantir.javaformat.doc.LayoutCache;
+import java.util.Collection;
+import javax.annotation.Nullable;
+
+/**
+ * Formats successive versions of the same file, as an editor does on every format request or save. Each request still
+ * parses the file and builds its {@link com.palantir.javaformat.doc.Doc} tree, but the layouts of large levels that
+ * are unchanged since the previous request, such as the members of a class that were not edited, are reused rather
+ * than searched for again, and a request for the same text and ranges as the previous one is answered from memory.
+ *
+ * <p>The output is the same as that of {@link Formatter}. Requests are serialized, so a session should be used for one
+ * file, or for files that are formatted one after the other.
+ */
+public final class FormattingSession {
+    private final Formatter formatter;
+    private final LayoutCache layoutCache = new LayoutCache();
+    private final CompilationUnitCache compilationUnitCache = new CompilationUnitCache();
+
+    @Nullable
+    private String lastInput;
+
+    @Nullable
+    private ImmutableList<Range<Integer>> lastRanges;
+
+    @Nullable
+    private FormatResult lastResult;
+
+    public FormattingSession(Formatter formatter) {
+        this.formatter = formatter;
+    }
+
+    /** Like {@link Formatter#getFormatReplacements}, reusing what is unchanged since the previous request. */
+    public ImmutableList<Replacement> getFormatReplacements(String input, Collection<Range<Integer>> characterRanges)
+            throws FormatterException {
+        return getFormatResult(input, characterRanges, CancellationToken.never()).replacements();
+    }
+
+    /**
+     * Like {@link Formatter#getFormatReplacements(String, Collection, CancellationToken)}, reusing what is unchanged
+     * since the previous request. A request that is waiting for the previous one to finish is usually for a newer
+     * version of the file, so cancelling the previous one lets it start sooner.
+     */
+    public ImmutableList<Replacement> getFormatReplacements(
+            String input, Collection<Range<Integer>> characterRanges, CancellationToken cancellationToken)
+            throws FormatterException {
+        return getFormatResult(input, characterRanges, cancellationToken).replacements();
+    }
+
+    /**
+     * Like {@link Formatter#getFormatResult}, reusing what is unchanged since the previous request. Degraded results
+     * are not remembered, so repeating the request searches again.
+     */
+    public FormatResult getFormatResult(String input, Collection<Range<Integer>> characterRanges)
+            throws FormatterException {
+        return getFormatResult(input, characterRanges, CancellationToken.never());
+    }
+
+    /** Like {@link #getFormatResult(String, Collection)}, but gives up once {@code cancellationToken} is cancelled. */
+    public synchronized FormatResult getFormatResult(
+            String input, Collection<Range<Integer>> characterRanges, CancellationToken cancellationToken)
+            throws FormatterException {
+        ImmutableList<Range<Integer>> ranges = ImmutableList.copyOf(characterRanges);
+        if (lastResult != null && input.equals(lastInput) && ranges.equals(lastRanges)) {
+            return lastResult;
+        }
+        FormatResult result =
+                formatter.getFormatResult(input, ranges, compilationUnitCache, layoutCache, cancellationToken);
+        if (!result.isDegraded()) {
+            this.lastInput = input;
+            this.lastRanges = ranges;
+            this.lastResult = result;
+        }
+        return result;
+    }
+
+    /** Like {@link Formatter#formatSource(String)}, reusing what is unchanged since the previous request. */
+    public String formatSource(String input) throws FormatterException {
+        return Utils.applyReplacements(
+                input, getFormatReplacements(input, ImmutableList.of(Range.closedOpen(0, input.length()))));
+    }
+}
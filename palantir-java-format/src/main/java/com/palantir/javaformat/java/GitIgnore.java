@@ -0,0 +1,184 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The subset of {@code .gitignore} semantics needed to skip ignored files while walking a directory tree: blank lines
+ * and comments, {@code !} negation, directory-only patterns with a trailing {@code /}, and patterns that are either
+ * anchored to the directory of their {@code .gitignore} (if they contain a {@code /}) or match a name at any depth.
+ * Later rules, and rules from deeper directories, take precedence. Global excludes and {@code .git/info/exclude} are
+ * not consulted.
+ */
+final class GitIgnore {
+    static final GitIgnore EMPTY = new GitIgnore(ImmutableList.of());
+
+    private static final String FILE_NAME = ".gitignore";
+
+    private final ImmutableList<Rule> rules;
+
+    private GitIgnore(ImmutableList<Rule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Returns the rules from the {@code .gitignore} files of the ancestors of {@code directory}, up to the root of the
+     * enclosing git repository. Outside of a git repository there are none.
+     */
+    static GitIgnore forAncestorsOf(Path directory) throws IOException {
+        Path start = directory.toAbsolutePath().normalize();
+        List<Path> ancestors = new ArrayList<>();
+        for (Path dir = start; dir != null; dir = dir.getParent()) {
+            if (!dir.equals(start)) {
+                // The directory itself is read when it is listed.
+                ancestors.add(dir);
+            }
+            if (Files.exists(dir.resolve(".git"))) {
+                GitIgnore result = EMPTY;
+                // Outermost first, so that deeper rules take precedence.
+                for (Path ancestor : Lists.reverse(ancestors)) {
+                    result = result.withRulesFrom(ancestor);
+                }
+                return result;
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Returns true if {@code file}, or any directory that it is in, is ignored by the {@code .gitignore} files of the
+     * enclosing git repository, as if the repository had been walked from its root. Outside of a git repository nothing
+     * is ignored.
+     */
+    static boolean isIgnoredInRepository(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath().normalize();
+        List<Path> directories = new ArrayList<>();
+        for (Path dir = absolute.getParent(); dir != null; dir = dir.getParent()) {
+            directories.add(dir);
+            if (Files.exists(dir.resolve(".git"))) {
+                // The root of the repository is never ignored itself.
+                GitIgnore ignore = EMPTY.withRulesFrom(dir);
+                for (Path directory : Lists.reverse(directories.subList(0, directories.size() - 1))) {
+                    if (ignore.isIgnored(directory, true)) {
+                        return true;
+                    }
+                    ignore = ignore.withRulesFrom(directory);
+                }
+                return ignore.isIgnored(absolute, false);
+            }
+        }
+        return false;
+    }
+
+    /** Returns these rules plus those of the {@code .gitignore} file in {@code directory}, if there is one. */
+    GitIgnore withRulesFrom(Path directory) throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(directory.resolve(FILE_NAME), UTF_8);
+        } catch (NoSuchFileException e) {
+            return this;
+        }
+        Path base = directory.toAbsolutePath().normalize();
+        ImmutableList.Builder<Rule> builder = ImmutableList.<Rule>builder().addAll(rules);
+        for (String line : lines) {
+            Rule.parse(base, line).ifPresent(builder::add);
+        }
+        return new GitIgnore(builder.build());
+    }
+
+    /** Returns true if {@code path} is ignored. Only the path itself is checked, not its parent directories. */
+    boolean isIgnored(Path path, boolean isDirectory) {
+        if (rules.isEmpty()) {
+            return false;
+        }
+        Path absolute = path.toAbsolutePath().normalize();
+        for (Rule rule : rules.reverse()) {
+            if (rule.matches(absolute, isDirectory)) {
+                return !rule.negated;
+            }
+        }
+        return false;
+    }
+
+    private static final class Rule {
+        private final Path base;
+        private final PathMatcher matcher;
+        private final boolean negated;
+        private final boolean directoryOnly;
+        private final boolean anchored;
+
+        private Rule(Path base, PathMatcher matcher, boolean negated, boolean directoryOnly, boolean anchored) {
+            this.base = base;
+            this.matcher = matcher;
+            this.negated = negated;
+            this.directoryOnly = directoryOnly;
+            this.anchored = anchored;
+        }
+
+        static Optional<Rule> parse(Path base, String line) {
+            String pattern = line.stripTrailing();
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                return Optional.empty();
+            }
+            boolean negated = pattern.startsWith("!");
+            if (negated) {
+                pattern = pattern.substring(1);
+            }
+            boolean directoryOnly = pattern.endsWith("/");
+            if (directoryOnly) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            if (pattern.startsWith("**/") && pattern.indexOf('/', "**/".length()) < 0) {
+                pattern = pattern.substring("**/".length());
+            }
+            boolean anchored = pattern.contains("/");
+            if (pattern.startsWith("/")) {
+                pattern = pattern.substring(1);
+            }
+            if (pattern.isEmpty()) {
+                return Optional.empty();
+            }
+            // Braces are literal in .gitignore patterns, but denote alternatives in globs.
+            String glob = pattern.replace("{", "\\{").replace("}", "\\}");
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+            return Optional.of(new Rule(base, matcher, negated, directoryOnly, anchored));
+        }
+
+        boolean matches(Path absolute, boolean isDirectory) {
+            if (directoryOnly && !isDirectory) {
+                return false;
+            }
+            if (!absolute.startsWith(base) || absolute.equals(base)) {
+                return false;
+            }
+            return anchored ? matcher.matches(base.relativize(absolute)) : matcher.matches(absolute.getFileName());
+        }
+    }
+}
@@ -16,7 +16,6 @@ package com.palantir.javaformat.java;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Iterables.getLast;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Suppliers;
@@ -24,37 +23,24 @@ import com.google.common.base.Verify;
 import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableRangeMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import com.google.common.collect.TreeRangeSet;
 import com.google.errorprone.annotations.Immutable;
 import com.palantir.javaformat.Input;
+import com.palantir.javaformat.LineIndex;
 import com.palantir.javaformat.Newlines;
 import com.palantir.javaformat.java.JavacTokens.RawTok;
-import com.sun.tools.javac.file.JavacFileManager;
 import com.sun.tools.javac.parser.Tokens.TokenKind;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
-import com.sun.tools.javac.util.Context;
-import com.sun.tools.javac.util.Log;
-import com.sun.tools.javac.util.Log.DeferredDiagnosticHandler;
-import com.sun.tools.javac.util.Options;
-import java.io.IOException;
-import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 import java.util.function.Supplier;
-import javax.tools.Diagnostic;
-import javax.tools.DiagnosticCollector;
-import javax.tools.DiagnosticListener;
-import javax.tools.JavaFileObject;
-import javax.tools.JavaFileObject.Kind;
-import javax.tools.SimpleJavaFileObject;
 
 /** {@code JavaInput} extends {@link Input} to represent a Java input document. */
 public final class JavaInput extends Input {
@@ -181,24 +167,30 @@ public final class JavaInput extends Input {
      * list of its non-tokens that appear after it. The concatenation of the texts of all the {@link Token}s'
      * {@link Tok}s, each preceded by the texts of its {@code toksBefore} and followed by the texts of its
      * {@code toksAfter}, equals the input.
+     *
+     * <p>The toks of all the tokens are kept in one list, in order, and each token only holds the range of its toks in
+     * that list.
      */
     @Immutable
     static final class Token implements Input.Token {
-        private final Tok tok;
-        private final ImmutableList<Tok> toksBefore;
-        private final ImmutableList<Tok> toksAfter;
+        private final ImmutableList<Tok> toks;
+        private final int start;
+        private final int tokIndex;
+        private final int end;
 
         /**
          * Token constructor.
          *
-         * @param toksBefore the earlier non-token {link Tok}s assigned to this {@code Token}
-         * @param tok this token {@link Tok}
-         * @param toksAfter the later non-token {link Tok}s assigned to this {@code Token}
+         * @param toks the toks of all the tokens of the input
+         * @param start the index in {@code toks} of the earlier non-token {@link Tok}s assigned to this {@code Token}
+         * @param tokIndex the index in {@code toks} of this token {@link Tok}
+         * @param end the index in {@code toks} after the later non-token {@link Tok}s assigned to this {@code Token}
          */
-        Token(List<Tok> toksBefore, Tok tok, List<Tok> toksAfter) {
-            this.toksBefore = ImmutableList.copyOf(toksBefore);
-            this.tok = tok;
-            this.toksAfter = ImmutableList.copyOf(toksAfter);
+        Token(ImmutableList<Tok> toks, int start, int tokIndex, int end) {
+            this.toks = toks;
+            this.start = start;
+            this.tokIndex = tokIndex;
+            this.end = end;
         }
 
         /**
@@ -208,7 +200,7 @@ public final class JavaInput extends Input {
          */
         @Override
         public Tok getTok() {
-            return tok;
+            return toks.get(tokIndex);
         }
 
         /**
@@ -218,7 +210,7 @@ public final class JavaInput extends Input {
          */
         @Override
         public ImmutableList<? extends Input.Tok> getToksBefore() {
-            return toksBefore;
+            return toks.subList(start, tokIndex);
         }
 
         /**
@@ -228,19 +220,34 @@ public final class JavaInput extends Input {
          */
         @Override
         public ImmutableList<? extends Input.Tok> getToksAfter() {
-            return toksAfter;
+            return toks.subList(tokIndex + 1, end);
         }
 
         @Override
         public String toString() {
             return MoreObjects.toStringHelper(this)
-                    .add("tok", tok)
-                    .add("toksBefore", toksBefore)
-                    .add("toksAfter", toksAfter)
+                    .add("tok", getTok())
+                    .add("toksBefore", getToksBefore())
+                    .add("toksAfter", getToksAfter())
                     .toString();
         }
     }
 
+    /** The texts of the one-character toks with ASCII text. */
+    private static final String[] SHARED_CHARS = new String[128];
+
+    /** The texts of runs of fewer than 64 spaces. */
+    private static final String[] SHARED_SPACES = new String[64];
+
+    static {
+        for (char c = 0; c < SHARED_CHARS.length; c++) {
+            SHARED_CHARS[c] = String.valueOf(c).intern();
+        }
+        for (int i = 0; i < SHARED_SPACES.length; i++) {
+            SHARED_SPACES[i] = " ".repeat(i).intern();
+        }
+    }
+
     private final String text; // The input.
     private final Supplier<String> lineSeparator = Suppliers.memoize(() -> Newlines.guessLineSeparator(getText()));
     private int kN; // The number of numbered toks (tokens or comments), excluding the EOF.
@@ -253,7 +260,7 @@ public final class JavaInput extends Input {
      * output.
      */
 
-    private final ImmutableMap<Integer, Integer> positionToColumnMap; // Map Tok position to column.
+    private final LineIndex lineIndex; // The start of each input line.
     private final ImmutableList<Token> tokens; // The Tokens for this input.
     private final ImmutableRangeMap<Integer, Token> positionTokenMap; // Map position to Token.
 
@@ -268,9 +275,9 @@ public final class JavaInput extends Input {
      */
     public JavaInput(String text) throws FormatterException {
         this.text = checkNotNull(text);
-        setLines(ImmutableList.copyOf(Newlines.lineIterator(text)));
+        this.lineIndex = LineIndex.of(text);
+        setLines(lines(text, lineIndex));
         ImmutableList<Tok> toks = buildToks(text);
-        positionToColumnMap = makePositionToColumnMap(toks);
         tokens = buildTokens(toks);
         ImmutableRangeMap.Builder<Integer, Token> tokenLocations = ImmutableRangeMap.builder();
         for (Token token : tokens) {
@@ -302,12 +309,13 @@ public final class JavaInput extends Input {
         }
     }
 
-    private static ImmutableMap<Integer, Integer> makePositionToColumnMap(List<Tok> toks) {
-        ImmutableMap.Builder<Integer, Integer> builder = ImmutableMap.builder();
-        for (Tok tok : toks) {
-            builder.put(tok.getPosition(), tok.getColumn());
+    /** Returns the lines of the input, with their line breaks. */
+    private static ImmutableList<String> lines(String text, LineIndex lineIndex) {
+        ImmutableList.Builder<String> lines = ImmutableList.builderWithExpectedSize(lineIndex.lineCount());
+        for (int i = 0; i < lineIndex.lineCount() && lineIndex.lineStart(i) < text.length(); i++) {
+            lines.add(text.substring(lineIndex.lineStart(i), lineIndex.lineEnd(i)));
         }
-        return builder.buildOrThrow();
+        return lines.build();
     }
 
     /**
@@ -321,8 +329,8 @@ public final class JavaInput extends Input {
     }
 
     @Override
-    public ImmutableMap<Integer, Integer> getPositionToColumnMap() {
-        return positionToColumnMap;
+    public int getColumn(int inputPosition) {
+        return lineIndex.columnOf(inputPosition);
     }
 
     public String getLineSeparator() {
@@ -331,7 +339,7 @@ public final class JavaInput extends Input {
 
     /** Lex the input and build the list of toks. */
     private ImmutableList<Tok> buildToks(String text) throws FormatterException {
-        ImmutableList<Tok> toks = buildToks(text, ImmutableSet.of());
+        ImmutableList<Tok> toks = buildToks(text, lineIndex, ImmutableSet.of());
         kN = getLast(toks).getIndex();
         computeRanges(toks);
         return toks;
@@ -345,40 +353,33 @@ public final class JavaInput extends Input {
      *     will include tokens up to but not including that token.
      */
     static ImmutableList<Tok> buildToks(String text, ImmutableSet<TokenKind> stopTokens) throws FormatterException {
+        return buildToks(text, LineIndex.of(text), stopTokens);
+    }
+
+    private static ImmutableList<Tok> buildToks(String text, LineIndex lineIndex, ImmutableSet<TokenKind> stopTokens)
+            throws FormatterException {
         stopTokens = ImmutableSet.<TokenKind>builder()
                 .addAll(stopTokens)
                 .add(TokenKind.EOF)
                 .build();
-        Context context = new Context();
-        Options.instance(context).put("--enable-preview", "true");
-        new JavacFileManager(context, true, UTF_8);
-        DiagnosticCollector<JavaFileObject> diagnosticCollector = new DiagnosticCollector<>();
-        context.put(DiagnosticListener.class, diagnosticCollector);
-        Log log = Log.instance(context);
-        log.useSource(new SimpleJavaFileObject(URI.create("Source.java"), Kind.SOURCE) {
-            @Override
-            public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
-                return text;
-            }
-        });
-        DeferredDiagnosticHandler diagnostics = new DeferredDiagnosticHandler(log);
-        ImmutableList<RawTok> rawToks = JavacTokens.getTokens(text, context, stopTokens);
-        if (diagnostics.getDiagnostics().stream().anyMatch(d -> d.getKind() == Diagnostic.Kind.ERROR)) {
+        Optional<ImmutableList<RawTok>> lexed =
+                JavacSession.forThread(/* allowStringFolding= */ false).lex(text, stopTokens);
+        if (lexed.isEmpty()) {
             return ImmutableList.of(new Tok(0, "", "", 0, 0, true, null)); // EOF
         }
+        ImmutableList<RawTok> rawToks = lexed.get();
         int kN = 0;
         List<Tok> toks = new ArrayList<>();
         int charI = 0;
-        int columnI = 0;
         for (RawTok t : rawToks) {
             if (stopTokens.contains(t.kind())) {
                 break;
             }
             int charI0 = t.pos();
             // Get string, possibly with Unicode escapes.
-            String originalTokText = text.substring(charI0, t.endPos());
-            String tokText = t.kind() == TokenKind.STRINGLITERAL
-                    ? t.stringVal() // Unicode escapes removed.
+            String originalTokText = shared(text, charI0, t.endPos());
+            String tokText = t.stringVal() != null
+                    ? t.stringVal() // Escapes in string literals removed, text blocks decoded.
                     : originalTokText;
             char tokText0 = tokText.charAt(0); // The token's first character.
             final boolean isToken; // Is this tok a token?
@@ -395,11 +396,11 @@ public final class JavaInput extends Input {
                     if (newline != null) {
                         String spaces = line.substring(0, line.length() - newline.length());
                         if (!spaces.isEmpty()) {
-                            strings.add(spaces);
+                            strings.add(shared(spaces));
                         }
                         strings.add(newline);
                     } else if (!line.isEmpty()) {
-                        strings.add(line);
+                        strings.add(shared(line));
                     }
                 }
             } else if (tokText.startsWith("'") || tokText.startsWith("\"")) {
@@ -430,14 +431,23 @@ public final class JavaInput extends Input {
                 isToken = true;
                 isNumbered = true;
                 for (int i = 0; i < tokText.length(); i++) {
-                    char c = tokText.charAt(i);
-                    strings.add(String.valueOf(c));
+                    strings.add(shared(tokText.charAt(i)));
                 }
             }
             if (strings.size() == 1) {
-                toks.add(new Tok(isNumbered ? kN++ : -1, originalTokText, tokText, charI, columnI, isToken, t.kind()));
+                // Don't keep a second copy of the text of comments.
+                if (tokText.equals(originalTokText)) {
+                    tokText = originalTokText;
+                }
+                toks.add(new Tok(
+                        isNumbered ? kN++ : -1,
+                        originalTokText,
+                        tokText,
+                        charI,
+                        lineIndex.columnOf(charI),
+                        isToken,
+                        t.kind()));
                 charI += originalTokText.length();
-                columnI = updateColumn(columnI, originalTokText);
 
             } else {
                 if (strings.size() != 1 && !tokText.equals(originalTokText)) {
@@ -445,44 +455,71 @@ public final class JavaInput extends Input {
                             "Unicode escapes not allowed in whitespace or multi-character operators");
                 }
                 for (String str : strings) {
-                    toks.add(new Tok(isNumbered ? kN++ : -1, str, str, charI, columnI, isToken, null));
+                    toks.add(new Tok(
+                            isNumbered ? kN++ : -1, str, str, charI, lineIndex.columnOf(charI), isToken, null));
                     charI += str.length();
-                    columnI = updateColumn(columnI, originalTokText);
                 }
             }
             if (extraNewline != null) {
-                toks.add(new Tok(-1, extraNewline, extraNewline, charI, columnI, false, null));
-                columnI = 0;
+                toks.add(new Tok(-1, extraNewline, extraNewline, charI, lineIndex.columnOf(charI), false, null));
                 charI += extraNewline.length();
             }
         }
-        toks.add(new Tok(kN, "", "", charI, columnI, true, null)); // EOF tok.
+        toks.add(new Tok(kN, "", "", charI, lineIndex.columnOf(charI), true, null)); // EOF tok.
         return ImmutableList.copyOf(toks);
     }
 
-    private static int updateColumn(int columnI, String originalTokText) {
-        Integer last = Iterators.getLast(Newlines.lineOffsetIterator(originalTokText));
-        if (last > 0) {
-            columnI = originalTokText.length() - last;
-        } else {
-            columnI += originalTokText.length();
+    /**
+     * Returns a shared copy of {@code text} if it is the text of a common tok, such as an operator or the indentation
+     * of a line, so that the toks of a large input don't each hold their own copy.
+     */
+    private static String shared(String text) {
+        return shared(text, 0, text.length());
+    }
+
+    /** Returns {@code text.substring(start, end)}, without copying it if it is the text of a common tok. */
+    private static String shared(String text, int start, int end) {
+        int length = end - start;
+        if (length == 1) {
+            return shared(text.charAt(start));
+        }
+        if (length < SHARED_SPACES.length && isSpaces(text, start, end)) {
+            return SHARED_SPACES[length];
         }
-        return columnI;
+        return text.substring(start, end);
+    }
+
+    private static boolean isSpaces(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String shared(char c) {
+        return c < SHARED_CHARS.length ? SHARED_CHARS[c] : String.valueOf(c);
     }
 
     private static ImmutableList<Token> buildTokens(List<Tok> toks) {
-        ImmutableList.Builder<Token> tokens = ImmutableList.builder();
         int k = 0;
         int kN = toks.size();
 
-        // Remaining non-tokens before the token go here.
-        ImmutableList.Builder<Tok> toksBefore = ImmutableList.builder();
+        // The toks that belong to the tokens, in order. Newlines after parameter comments are dropped.
+        List<Tok> tokenToks = new ArrayList<>(kN);
+        // For each token, the indexes in tokenToks of its first tok, of its token tok, and after its last tok.
+        int[] bounds = new int[3 * kN];
+        int tokenCount = 0;
+
+        // Remaining non-tokens before the token start here.
+        int start = 0;
 
         OUTERMOST:
         while (k < kN) {
             while (!toks.get(k).isToken()) {
                 Tok tok = toks.get(k++);
-                toksBefore.add(tok);
+                tokenToks.add(tok);
                 if (isParamComment(tok)) {
                     while (toks.get(k).isNewline()) {
                         // drop newlines after parameter comments
@@ -490,10 +527,11 @@ public final class JavaInput extends Input {
                     }
                 }
             }
+            int tokIndex = tokenToks.size();
             Tok tok = toks.get(k++);
+            tokenToks.add(tok);
 
             // Non-tokens starting on the same line go here too.
-            ImmutableList.Builder<Tok> toksAfter = ImmutableList.builder();
             OUTER:
             while (k < kN && !toks.get(k).isToken()) {
                 // Don't attach inline comments to certain leading tokens, e.g. for `f(/*flag1=*/true).
@@ -522,8 +560,9 @@ public final class JavaInput extends Input {
                     }
                 }
                 if (isParamComment(toks.get(k))) {
-                    tokens.add(new Token(toksBefore.build(), tok, toksAfter.build()));
-                    toksBefore = ImmutableList.<Tok>builder().add(toks.get(k++));
+                    setBounds(bounds, tokenCount++, start, tokIndex, tokenToks.size());
+                    start = tokenToks.size();
+                    tokenToks.add(toks.get(k++));
                     // drop newlines after parameter comments
                     while (toks.get(k).isNewline()) {
                         k++;
@@ -531,17 +570,29 @@ public final class JavaInput extends Input {
                     continue OUTERMOST;
                 }
                 Tok nonTokenAfter = toks.get(k++);
-                toksAfter.add(nonTokenAfter);
+                tokenToks.add(nonTokenAfter);
                 if (Newlines.containsBreaks(nonTokenAfter.getText())) {
                     break;
                 }
             }
-            tokens.add(new Token(toksBefore.build(), tok, toksAfter.build()));
-            toksBefore = ImmutableList.builder();
+            setBounds(bounds, tokenCount++, start, tokIndex, tokenToks.size());
+            start = tokenToks.size();
+        }
+
+        ImmutableList<Tok> allTokenToks = ImmutableList.copyOf(tokenToks);
+        ImmutableList.Builder<Token> tokens = ImmutableList.builderWithExpectedSize(tokenCount);
+        for (int i = 0; i < tokenCount; i++) {
+            tokens.add(new Token(allTokenToks, bounds[3 * i], bounds[3 * i + 1], bounds[3 * i + 2]));
         }
         return tokens.build();
     }
 
+    private static void setBounds(int[] bounds, int token, int start, int tokIndex, int end) {
+        bounds[3 * token] = start;
+        bounds[3 * token + 1] = tokIndex;
+        bounds[3 * token + 2] = end;
+    }
+
     private static boolean isParamComment(Tok tok) {
         return tok.isSlashStarComment() && tok.getText().matches("\\/\\*[A-Za-z0-9\\s_\\-]+=\\s*\\*\\/");
     }
@@ -630,8 +681,7 @@ public final class JavaInput extends Input {
 
     @Override
     public int getLineNumber(int inputPosition) {
-        Verify.verifyNotNull(unit, "Expected compilation unit to be set.");
-        return unit.getLineMap().getLineNumber(inputPosition);
+        return lineIndex.lineOf(inputPosition) + 1;
     }
 
     @Override
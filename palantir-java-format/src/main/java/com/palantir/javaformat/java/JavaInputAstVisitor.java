@@ -148,9 +148,9 @@ import java.util.Collections;
 import java.util.Deque;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
@@ -279,6 +279,7 @@ public class JavaInputAstVisitor extends TreePathScanner<Void, Void> {
     }
 
     protected final OpsBuilder builder;
+    private final CancellationToken cancellationToken;
 
     protected static final Indent.Const ZERO = Indent.Const.ZERO;
     protected final int indentMultiplier;
@@ -314,7 +315,17 @@ public class JavaInputAstVisitor extends TreePathScanner<Void, Void> {
      * @param builder the {@link OpsBuilder}
      */
     public JavaInputAstVisitor(OpsBuilder builder, int indentMultiplier) {
+        this(builder, indentMultiplier, CancellationToken.never());
+    }
+
+    /**
+     * A visitor that gives up with a {@link CancellationException} once {@code cancellationToken} is cancelled.
+     *
+     * @param builder the {@link OpsBuilder}
+     */
+    public JavaInputAstVisitor(OpsBuilder builder, int indentMultiplier, CancellationToken cancellationToken) {
         this.builder = builder;
+        this.cancellationToken = cancellationToken;
         this.indentMultiplier = indentMultiplier;
         minusTwo = Indent.Const.make(-2, indentMultiplier);
         minusFour = Indent.Const.make(-4, indentMultiplier);
@@ -331,11 +342,12 @@ public class JavaInputAstVisitor extends TreePathScanner<Void, Void> {
 
     @Override
     public Void scan(Tree tree, Void unused) {
+        cancellationToken.throwIfCancelled();
         inExpression.addLast(tree instanceof ExpressionTree || inExpression.peekLast());
         int previous = builder.depth();
         try {
             super.scan(tree, null);
-        } catch (FormattingError e) {
+        } catch (FormattingError | CancellationException e) {
             throw e;
         } catch (Throwable t) {
             throw new FormattingError(builder.diagnostic(Throwables.getStackTraceAsString(t)));
@@ -3328,9 +3340,8 @@ public class JavaInputAstVisitor extends TreePathScanner<Void, Void> {
         return size;
     }
 
-    private Integer actualColumn(ExpressionTree expression) {
-        Map<Integer, Integer> positionToColumnMap = builder.getInput().getPositionToColumnMap();
-        return positionToColumnMap.get(builder.actualStartColumn(getStartPosition(expression)));
+    private int actualColumn(ExpressionTree expression) {
+        return builder.getInput().getColumn(builder.actualStartColumn(getStartPosition(expression)));
     }
 
     /** How many lines does this node take up in the input. Returns at least 1. */
@@ -53,6 +53,7 @@ public final class JavaOutput extends Output {
     private int spacesPending = 0;
     private int newlinesPending = 0;
     private StringBuilder lineBuilder = new StringBuilder();
+    private boolean degraded = false; // Whether the layout search ran out of budget.
 
     /**
      * {@code JavaOutput} constructor.
@@ -170,8 +171,17 @@ public final class JavaOutput extends Output {
         setLines(ImmutableList.copyOf(mutableLines));
     }
 
+    void markDegraded() {
+        degraded = true;
+    }
+
     // The following methods can be used after the Output has been built.
 
+    /** Whether the layout search ran out of its {@link FormatBudget}, so the output may not be the best layout. */
+    public boolean isDegraded() {
+        return degraded;
+    }
+
     /**
      * Emit a list of {@link Replacement}s to convert from input to output.
      *
@@ -0,0 +1,156 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.palantir.javaformat.java.JavacTokens.RawTok;
+import com.sun.tools.javac.file.JavacFileManager;
+import com.sun.tools.javac.parser.JavacParser;
+import com.sun.tools.javac.parser.ParserFactory;
+import com.sun.tools.javac.parser.Tokens.TokenKind;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Log.DeferredDiagnosticHandler;
+import com.sun.tools.javac.util.Options;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * The javac context that a thread lexes and parses sources in. Setting up a context, with its file manager, log, name
+ * table and parser factory, costs about as much as parsing a small file, and the passes of the pipeline lex and parse
+ * every file several times. So each thread keeps a context, and only the source and the diagnostics change between
+ * uses.
+ *
+ * <p>Confined to its thread. A session is replaced once it has reported errors, as the javac log counts and remembers
+ * them, and after {@link #MAX_USES} uses, as the name table keeps every name that it has seen. The contexts of
+ * replaced sessions stay valid for the compilation units that were parsed in them.
+ */
+final class JavacSession {
+    private static final int MAX_USES = 1000;
+    private static final ThreadLocal<JavacSession> WITHOUT_STRING_FOLDING = new ThreadLocal<>();
+    private static final ThreadLocal<JavacSession> WITH_STRING_FOLDING = new ThreadLocal<>();
+
+    private final Context context = new Context();
+    private final List<Diagnostic<? extends JavaFileObject>> diagnostics = new ArrayList<>();
+    private final Log log;
+    private final ParserFactory parserFactory;
+    private int uses = 0;
+    private boolean retired = false;
+
+    private JavacSession(boolean allowStringFolding) {
+        Options options = Options.instance(context);
+        options.put("allowStringFolding", Boolean.toString(allowStringFolding));
+        options.put("--enable-preview", "true");
+        context.put(DiagnosticListener.class, (DiagnosticListener<JavaFileObject>) diagnostics::add);
+        JavacFileManager fileManager = new JavacFileManager(context, true, UTF_8);
+        try {
+            fileManager.setLocation(StandardLocation.PLATFORM_CLASS_PATH, ImmutableList.of());
+        } catch (IOException e) {
+            // impossible
+            throw new RuntimeException(e);
+        }
+        this.log = Log.instance(context);
+        this.parserFactory = ParserFactory.instance(context);
+    }
+
+    /**
+     * Returns the session of the current thread. The string folding option makes the parser fold concatenations of
+     * string literals into one literal, and is only wanted to compare the syntax trees of sources.
+     */
+    static JavacSession forThread(boolean allowStringFolding) {
+        ThreadLocal<JavacSession> sessions = allowStringFolding ? WITH_STRING_FOLDING : WITHOUT_STRING_FOLDING;
+        JavacSession session = sessions.get();
+        if (session == null || session.retired) {
+            session = new JavacSession(allowStringFolding);
+            sessions.set(session);
+        }
+        return session;
+    }
+
+    /** The javac context of the session, which holds the compilation units that it parsed. */
+    Context context() {
+        return context;
+    }
+
+    /** Parses {@code source}, keeping its doc comments, end positions and line map. */
+    JCCompilationUnit parse(String source) throws FormatterException {
+        JavaFileObject sourceFile = startUse(source);
+        JCCompilationUnit unit;
+        boolean parsed = false;
+        try {
+            JavacParser parser = parserFactory.newParser(
+                    source, /*keepDocComments=*/ true, /*keepEndPos=*/ true, /*keepLineMap=*/ true);
+            unit = parser.parseCompilationUnit();
+            parsed = true;
+        } finally {
+            // The log may be left in any state by a parser that failed.
+            retired |= !parsed || !diagnostics.isEmpty();
+        }
+        unit.sourcefile = sourceFile;
+
+        ImmutableList<Diagnostic<? extends JavaFileObject>> errors = diagnostics.stream()
+                .filter(Formatter::errorDiagnostic)
+                .collect(ImmutableList.toImmutableList());
+        diagnostics.clear();
+        if (!errors.isEmpty()) {
+            throw FormatterExceptions.fromJavacDiagnostics(errors);
+        }
+        return unit;
+    }
+
+    /** Lexes {@code source}, stopping before any of {@code stopTokens}, or returns empty if it has lexical errors. */
+    Optional<ImmutableList<RawTok>> lex(String source, Set<TokenKind> stopTokens) {
+        startUse(source);
+        // Deferred diagnostics are never reported to the log, so lexing leaves it as it was.
+        DeferredDiagnosticHandler deferred = new DeferredDiagnosticHandler(log);
+        try {
+            ImmutableList<RawTok> rawToks = JavacTokens.getTokens(source, context, stopTokens);
+            if (deferred.getDiagnostics().stream().anyMatch(d -> d.getKind() == Diagnostic.Kind.ERROR)) {
+                return Optional.empty();
+            }
+            return Optional.of(rawToks);
+        } finally {
+            log.popDiagnosticHandler(deferred);
+        }
+    }
+
+    private JavaFileObject startUse(String source) {
+        uses++;
+        retired |= uses >= MAX_USES;
+        diagnostics.clear();
+        JavaFileObject sourceFile = new SimpleJavaFileObject(URI.create("Source.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        log.useSource(sourceFile);
+        return sourceFile;
+    }
+}
@@ -25,7 +25,6 @@ import com.sun.tools.javac.parser.Tokens.Comment;
 import com.sun.tools.javac.parser.Tokens.Comment.CommentStyle;
 import com.sun.tools.javac.parser.Tokens.Token;
 import com.sun.tools.javac.parser.Tokens.TokenKind;
-import com.sun.tools.javac.parser.UnicodeReader;
 import com.sun.tools.javac.util.Context;
 import java.util.Set;
 
@@ -34,7 +33,7 @@ class JavacTokens {
 
     /** The lexer eats terminal comments, so feed it one we don't care about. */
     // TODO(b/33103797): fix javac and remove the work-around
-    private static final CharSequence EOF_COMMENT = "\n//EOF";
+    private static final String EOF_COMMENT = "\n//EOF";
 
     /** An unprocessed input token, including whitespace and comments. */
     static class RawTok {
@@ -65,7 +64,11 @@ class JavacTokens {
             return endPos;
         }
 
-        /** The escaped string value of a literal, or {@code null} for other tokens. */
+        /**
+         * The value of a text block or of a string literal that contains escapes, in quotes, or {@code null} for other
+         * tokens, whose value is their text. Text blocks are always decoded, as their value also drops the incidental
+         * indentation and the delimiters.
+         */
         public String stringVal() {
             return stringVal;
         }
@@ -77,8 +80,14 @@ class JavacTokens {
             return ImmutableList.of();
         }
         ScannerFactory fac = ScannerFactory.instance(context);
-        char[] buffer = (source + EOF_COMMENT).toCharArray();
-        Scanner scanner = new AccessibleScanner(fac, new CommentSavingTokenizer(fac, buffer, buffer.length));
+        // The one copy of the source that javac scans, followed by the EOF comment. The spare last char is for the
+        // sentinel that the reader of older javac versions adds, which it otherwise copies the whole buffer to make
+        // room for.
+        int length = source.length() + EOF_COMMENT.length();
+        char[] buffer = new char[length + 1];
+        source.getChars(0, source.length(), buffer, 0);
+        EOF_COMMENT.getChars(0, EOF_COMMENT.length(), buffer, source.length());
+        Scanner scanner = new AccessibleScanner(fac, new CommentSavingTokenizer(fac, buffer, length));
         ImmutableList.Builder<RawTok> tokens = ImmutableList.builder();
         int end = source.length();
         int last = 0;
@@ -87,15 +96,12 @@ class JavacTokens {
             Token t = scanner.token();
             if (t.comments != null) {
                 for (Comment c : Lists.reverse(t.comments)) {
-                    if (last < c.getSourcePos(0)) {
-                        tokens.add(new RawTok(null, null, last, c.getSourcePos(0)));
+                    CommentWithTextAndPosition comment = (CommentWithTextAndPosition) c;
+                    if (last < comment.pos) {
+                        tokens.add(new RawTok(null, null, last, comment.pos));
                     }
-                    tokens.add(new RawTok(
-                            null,
-                            null,
-                            c.getSourcePos(0),
-                            c.getSourcePos(0) + c.getText().length()));
-                    last = c.getSourcePos(0) + c.getText().length();
+                    tokens.add(new RawTok(null, null, comment.pos, comment.endPos));
+                    last = comment.endPos;
                 }
             }
             if (stopTokens.contains(t.kind)) {
@@ -107,8 +113,9 @@ class JavacTokens {
             if (last < t.pos) {
                 tokens.add(new RawTok(null, null, last, t.pos));
             }
-            tokens.add(new RawTok(
-                    t.kind == TokenKind.STRINGLITERAL ? "\"" + t.stringVal() + "\"" : null, t.kind, t.pos, t.endPos));
+            boolean decoded = t.kind == TokenKind.STRINGLITERAL
+                    && (isTextBlock(buffer, t.pos, t.endPos) || hasEscapes(buffer, t.pos, t.endPos));
+            tokens.add(new RawTok(decoded ? "\"" + t.stringVal() + "\"" : null, t.kind, t.pos, t.endPos));
             last = t.endPos;
         } while (scanner.token().kind != TokenKind.EOF);
         if (last < end) {
@@ -117,32 +124,33 @@ class JavacTokens {
         return tokens.build();
     }
 
+    private static boolean isTextBlock(char[] buffer, int pos, int endPos) {
+        // An ordinary string literal can't start with three quotes, as the first two would be an empty string.
+        return endPos - pos >= 6 && buffer[pos] == '"' && buffer[pos + 1] == '"' && buffer[pos + 2] == '"';
+    }
+
+    private static boolean hasEscapes(char[] buffer, int pos, int endPos) {
+        for (int i = pos; i < endPos; i++) {
+            if (buffer[i] == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /** A {@link JavaTokenizer} that saves comments. */
     static class CommentSavingTokenizer extends JavaTokenizer {
+        private final char[] buffer;
+
         CommentSavingTokenizer(ScannerFactory fac, char[] buffer, int length) {
             super(fac, buffer, length);
+            this.buffer = buffer;
         }
 
         @Override
         protected Comment processComment(int pos, int endPos, CommentStyle style) {
-            char[] buf = getRawCharactersReflectively(pos, endPos);
-            return new CommentWithTextAndPosition(pos, endPos, new AccessibleReader(fac, buf, buf.length), style);
-        }
-
-        private char[] getRawCharactersReflectively(int beginIndex, int endIndex) {
-            Object instance;
-            try {
-                instance = JavaTokenizer.class.getDeclaredField("reader").get(this);
-            } catch (ReflectiveOperationException e) {
-                instance = this;
-            }
-            try {
-                return (char[]) instance.getClass()
-                        .getMethod("getRawCharacters", int.class, int.class)
-                        .invoke(instance, beginIndex, endIndex);
-            } catch (ReflectiveOperationException e) {
-                throw new RuntimeException(e.getMessage(), e);
-            }
+            // Positions are offsets into the raw buffer, before Unicode escapes are processed.
+            return new CommentWithTextAndPosition(pos, endPos, buffer, style);
         }
     }
 
@@ -151,15 +159,15 @@ class JavacTokens {
 
         private final int pos;
         private final int endPos;
-        private final AccessibleReader reader;
+        private final char[] buffer;
         private final CommentStyle style;
 
         private String text = null;
 
-        public CommentWithTextAndPosition(int pos, int endPos, AccessibleReader reader, CommentStyle style) {
+        public CommentWithTextAndPosition(int pos, int endPos, char[] buffer, CommentStyle style) {
             this.pos = pos;
             this.endPos = endPos;
-            this.reader = reader;
+            this.buffer = buffer;
             this.style = style;
         }
 
@@ -185,7 +193,7 @@ class JavacTokens {
         public String getText() {
             String text = this.text;
             if (text == null) {
-                this.text = text = new String(reader.getRawCharacters());
+                this.text = text = new String(buffer, pos, endPos - pos);
             }
             return text;
         }
@@ -212,11 +220,4 @@ class JavacTokens {
             super(fac, tokenizer);
         }
     }
-
-    // UnicodeReader(ScannerFactory, char[], int) is package-private
-    static class AccessibleReader extends UnicodeReader {
-        protected AccessibleReader(ScannerFactory fac, char[] buffer, int length) {
-            super(fac, buffer, length);
-        }
-    }
 }
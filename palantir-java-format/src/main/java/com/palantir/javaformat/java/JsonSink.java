@@ -82,7 +82,7 @@ public final class JsonSink implements Sink {
         return acceptedExplorationId -> json.put("acceptedExplorationId", acceptedExplorationId);
     }
 
-    @Override
+    /** The explorations that were recorded, as JSON for the debugger. */
     public String getOutput() {
         try {
             return OBJECT_MAPPER.writeValueAsString(rootNode);
@@ -0,0 +1,52 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import com.palantir.javaformat.doc.Obs;
+
+/**
+ * Observes the layout search of each file that a {@link Formatter} formats, as {@code --stats} does. Unlike a
+ * {@link FormatListener}, which is only told about phases, it chooses the {@link Obs} node that the search runs on.
+ *
+ * <p>Called on the thread that formats the file.
+ */
+interface LayoutObserver {
+
+    /** The node to lay out the file with. */
+    Obs.ExplorationNode observationNode();
+
+    /** Called once the layout search of {@code javaInput} is done, with whether it ran out of budget. */
+    void layoutFinished(JavaInput javaInput, boolean degraded);
+
+    /** An observer that lays out without observing anything. */
+    static LayoutObserver none() {
+        return Unobserved.INSTANCE;
+    }
+
+    /** The observer of {@link #none()}. */
+    enum Unobserved implements LayoutObserver {
+        INSTANCE;
+
+        @Override
+        public Obs.ExplorationNode observationNode() {
+            return Obs.untraced();
+        }
+
+        @Override
+        public void layoutFinished(JavaInput _javaInput, boolean _degraded) {}
+    }
+}
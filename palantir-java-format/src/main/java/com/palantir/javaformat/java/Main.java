@@ -16,28 +16,38 @@ package com.palantir.javaformat.java;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
 import com.google.common.io.ByteStreams;
 import com.palantir.javaformat.java.JavaFormatterOptions.Style;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.LinkedHashMap;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
 
 /** The main class for the Java formatter CLI. */
 public final class Main {
-    private static final int MAX_THREADS = 20;
+    private static final int MAX_IN_FLIGHT_PER_THREAD = 4;
     private static final String STDIN_FILENAME = "<stdin>";
 
     static String versionString() {
@@ -98,8 +108,12 @@ public final class Main {
         // TODO(someone): update this to always use Style.PALANTIR
         JavaFormatterOptions options = JavaFormatterOptions.builder()
                 .style(parameters.aosp() ? Style.AOSP : parameters.palantirStyle() ? Style.PALANTIR : Style.GOOGLE)
+                .parallelLayout(parameters.parallelLayout())
                 .build();
 
+        if (parameters.worker()) {
+            return serveWorker();
+        }
         if (parameters.stdin()) {
             return formatStdin(parameters, options);
         } else {
@@ -107,79 +121,212 @@ public final class Main {
         }
     }
 
+    private int serveWorker() {
+        try {
+            return new FormatterWorker(inStream, outWriter).serve();
+        } catch (IOException e) {
+            errWriter.println("worker: " + e.getMessage());
+            return 1;
+        }
+    }
+
     private int formatFiles(CommandLineOptions parameters, JavaFormatterOptions options) {
-        int numThreads = Math.min(MAX_THREADS, parameters.files().size());
-        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        int numThreads = numThreads(parameters);
+        PrioritizedExecutor executor = new PrioritizedExecutor(numThreads);
+        try {
+            return formatFiles(parameters, options, executor, numThreads);
+        } finally {
+            // Everything submitted has completed by now, unless we bailed out early.
+            executor.shutdownNow();
+        }
+    }
+
+    private static int numThreads(CommandLineOptions parameters) {
+        int numThreads = parameters.threads().orElseGet(() -> Runtime.getRuntime().availableProcessors());
+        // Directories and file lists may expand to any number of files.
+        boolean expandsFiles = parameters.filesFrom().isPresent()
+                || parameters.files().stream().anyMatch(fileName -> Files.isDirectory(Paths.get(fileName)));
+        return expandsFiles ? numThreads : Math.min(numThreads, parameters.files().size());
+    }
+
+    private int formatFiles(
+            CommandLineOptions parameters, JavaFormatterOptions options, PrioritizedExecutor executor, int numThreads) {
+        FileDiscovery discovery = new FileDiscovery(parameters, executor, errWriter);
 
-        Map<Path, String> inputs = new LinkedHashMap<>();
-        Map<Path, Future<String>> results = new LinkedHashMap<>();
+        // Files are read, formatted and compared on the executor, and results are reported in submission order.
+        // Bounding the number of files in flight bounds how many sources and outputs we hold in memory at once.
+        int maxInFlight = numThreads * MAX_IN_FLIGHT_PER_THREAD;
+        Deque<Map.Entry<Path, Future<FormattedFile>>> inFlight = new ArrayDeque<>();
+        // Multiple file names referring to the same file would race between reading and writing it.
+        Set<Path> seen = new HashSet<>();
         boolean allOk = true;
 
-        for (String fileName : parameters.files()) {
-            if (!fileName.endsWith(".java")) {
-                errWriter.println("Skipping non-Java file: " + fileName);
-                continue;
+        Optional<FormatResultCache> cache = openCache(parameters, options);
+
+        try (Stream<String> listedFiles = readFilesFrom(parameters)) {
+            Iterator<Path> files =
+                    discovery.files(Iterators.concat(parameters.files().iterator(), listedFiles.iterator()));
+            while (files.hasNext()) {
+                Path path = files.next();
+                if (!seen.add(path.toAbsolutePath().normalize())) {
+                    continue;
+                }
+                if (inFlight.size() >= maxInFlight) {
+                    allOk &= writeResult(inFlight.removeFirst(), parameters);
+                }
+                // Among the files queued at any time, the largest go first so they don't end up as the long tail.
+                inFlight.addLast(Maps.immutableEntry(
+                        path, executor.submit(() -> formatFile(path, parameters, options, cache), sizeOf(path))));
             }
-            Path path = Paths.get(fileName);
-            String input;
+        } catch (IOException e) {
+            reportUnreadableFileList(parameters, e);
+            allOk = false;
+        } catch (UncheckedIOException e) {
+            // The lines of the file list are read as the files are discovered.
+            reportUnreadableFileList(parameters, e.getCause());
+            allOk = false;
+        }
+        while (!inFlight.isEmpty()) {
+            allOk &= writeResult(inFlight.removeFirst(), parameters);
+        }
+        allOk &= !discovery.hadErrors();
+
+        if (cache.isPresent()) {
             try {
-                input = new String(Files.readAllBytes(path), UTF_8);
-                inputs.put(path, input);
-                results.put(path, executorService.submit(new FormatFileCallable(parameters, input, options)));
+                cache.get().save();
             } catch (IOException e) {
-                errWriter.println(fileName + ": could not read file: " + e.getMessage());
-                allOk = false;
+                // The cache is only an optimisation, so don't fail the run.
+                errWriter.println("could not update cache: " + e.getMessage());
             }
         }
+        return allOk ? 0 : 1;
+    }
+
+    private void reportUnreadableFileList(CommandLineOptions parameters, IOException e) {
+        errWriter.println(parameters.filesFrom().orElse("") + ": could not read file list: " + e.getMessage());
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            // Reported when the file is read.
+            return 0;
+        }
+    }
 
-        for (Map.Entry<Path, Future<String>> result : results.entrySet()) {
-            Path path = result.getKey();
-            String formatted;
-            try {
-                formatted = result.getValue().get();
-            } catch (InterruptedException e) {
-                errWriter.println(e.getMessage());
-                allOk = false;
-                continue;
-            } catch (ExecutionException e) {
-                if (e.getCause() instanceof FormatterException) {
-                    for (FormatterDiagnostic diagnostic : ((FormatterException) e.getCause()).diagnostics()) {
-                        errWriter.println(path + ":" + diagnostic.toString());
-                    }
-                } else {
-                    errWriter.println(path + ": error: "
-                            + Optional.ofNullable(e.getCause())
-                                    .map(Throwable::getMessage)
-                                    .orElse("null"));
-                    Optional.ofNullable(e.getCause()).ifPresent(cause -> cause.printStackTrace(errWriter));
+    /** Lazily reads the non-blank lines of the {@code --files-from} file list, if one was given. */
+    private Stream<String> readFilesFrom(CommandLineOptions parameters) throws IOException {
+        if (parameters.filesFrom().isEmpty()) {
+            return Stream.empty();
+        }
+        String filesFrom = parameters.filesFrom().get();
+        Stream<String> lines = filesFrom.equals("-")
+                ? new BufferedReader(new InputStreamReader(inStream, UTF_8)).lines()
+                : Files.lines(Paths.get(filesFrom), UTF_8);
+        return lines.map(String::strip).filter(line -> !line.isEmpty());
+    }
+
+    /** Reads, formats and compares a single file. Runs on the executor. */
+    private static FormattedFile formatFile(
+            Path path, CommandLineOptions parameters, JavaFormatterOptions options, Optional<FormatResultCache> cache)
+            throws FormatterException {
+        String input;
+        try {
+            input = new String(Files.readAllBytes(path), UTF_8);
+        } catch (IOException e) {
+            return FormattedFile.readError(e.getMessage());
+        }
+        if (cache.isPresent() && cache.get().isKnownFormatted(input)) {
+            return FormattedFile.of(parameters, false, input, null);
+        }
+        FormatStats stats = parameters.stats() ? new FormatStats() : null;
+        FormatListener listener = stats != null ? stats : FormatListener.none();
+        LayoutObserver layoutObserver = stats != null ? stats : LayoutObserver.none();
+        String formatted = new FormatFileCallable(parameters, input, options, listener, layoutObserver).call();
+        boolean changed = !formatted.equals(input);
+        // A file that is rewritten in place is recorded too, so that the next run can skip it.
+        if (cache.isPresent() && (!changed || (parameters.inPlace() && isStable(formatted, parameters, options)))) {
+            cache.get().markFormatted(formatted);
+        }
+        return FormattedFile.of(parameters, changed, formatted, stats != null ? stats.toJson(path.toString()) : null);
+    }
+
+    /** Returns true if formatting the {@code formatted} output again leaves it unchanged. */
+    private static boolean isStable(String formatted, CommandLineOptions parameters, JavaFormatterOptions options)
+            throws FormatterException {
+        return new FormatFileCallable(parameters, formatted, options, FormatListener.none(), LayoutObserver.none())
+                .call()
+                .equals(formatted);
+    }
+
+    /** Waits for a file to be formatted and writes or prints the result. Returns false if anything went wrong. */
+    private boolean writeResult(Map.Entry<Path, Future<FormattedFile>> task, CommandLineOptions parameters) {
+        Path path = task.getKey();
+        FormattedFile result;
+        try {
+            result = task.getValue().get();
+        } catch (InterruptedException e) {
+            errWriter.println(e.getMessage());
+            return false;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof FormatterException) {
+                for (FormatterDiagnostic diagnostic : ((FormatterException) e.getCause()).diagnostics()) {
+                    errWriter.println(path + ":" + diagnostic.toString());
                 }
-                allOk = false;
-                continue;
+            } else {
+                errWriter.println(path + ": error: "
+                        + Optional.ofNullable(e.getCause())
+                                .map(Throwable::getMessage)
+                                .orElse("null"));
+                Optional.ofNullable(e.getCause()).ifPresent(cause -> cause.printStackTrace(errWriter));
             }
-            boolean changed = !formatted.equals(inputs.get(path));
-            if (changed && parameters.setExitIfChanged()) {
-                allOk = false;
+            return false;
+        }
+
+        if (result.readError != null) {
+            errWriter.println(path + ": could not read file: " + result.readError);
+            return false;
+        }
+        if (result.stats != null) {
+            errWriter.println(result.stats);
+        }
+        boolean ok = !(result.changed && parameters.setExitIfChanged());
+        if (parameters.inPlace()) {
+            if (!result.changed) {
+                return ok; // preserve original file
             }
-            if (parameters.inPlace()) {
-                if (!changed) {
-                    continue; // preserve original file
-                }
-                try {
-                    Files.write(path, formatted.getBytes(UTF_8));
-                } catch (IOException e) {
-                    errWriter.println(path + ": could not write file: " + e.getMessage());
-                    allOk = false;
-                    continue;
-                }
-            } else if (parameters.dryRun()) {
-                if (changed) {
-                    outWriter.println(path);
-                }
-            } else {
-                outWriter.write(formatted);
+            try {
+                Files.write(path, result.formatted().getBytes(UTF_8));
+            } catch (IOException e) {
+                errWriter.println(path + ": could not write file: " + e.getMessage());
+                return false;
+            }
+        } else if (parameters.dryRun()) {
+            if (result.changed) {
+                outWriter.println(path);
             }
+        } else {
+            outWriter.write(result.formatted());
+        }
+        return ok;
+    }
+
+    private Optional<FormatResultCache> openCache(CommandLineOptions parameters, JavaFormatterOptions options) {
+        // Partial formatting and replacement output aren't "is this file formatted?" questions, so can't be cached.
+        // Nor can stats, which are about formatting the file.
+        if (parameters.cacheDir().isEmpty()
+                || parameters.isSelection()
+                || parameters.outputReplacements()
+                || parameters.stats()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(FormatResultCache.open(Paths.get(parameters.cacheDir().get()), parameters, options));
+        } catch (IOException e) {
+            errWriter.println("could not read cache, formatting all files: " + e.getMessage());
+            return Optional.empty();
         }
-        return allOk ? 0 : 1;
     }
 
     private int formatStdin(CommandLineOptions parameters, JavaFormatterOptions options) {
@@ -192,7 +339,13 @@ public final class Main {
         String stdinFilename = parameters.assumeFilename().orElse(STDIN_FILENAME);
         boolean ok = true;
         try {
-            String output = new FormatFileCallable(parameters, input, options).call();
+            FormatStats stats = parameters.stats() ? new FormatStats() : null;
+            FormatListener listener = stats != null ? stats : FormatListener.none();
+            LayoutObserver layoutObserver = stats != null ? stats : LayoutObserver.none();
+            String output = new FormatFileCallable(parameters, input, options, listener, layoutObserver).call();
+            if (stats != null) {
+                errWriter.println(stats.toJson(stdinFilename));
+            }
             boolean changed = !input.equals(output);
             if (changed && parameters.setExitIfChanged()) {
                 ok = false;
@@ -214,6 +367,43 @@ public final class Main {
         return ok ? 0 : 1;
     }
 
+    /** The outcome of formatting a single file. Only holds on to the output if it still needs to be written. */
+    private static final class FormattedFile {
+        @Nullable
+        private final String readError;
+
+        private final boolean changed;
+
+        @Nullable
+        private final String formatted;
+
+        /** The {@code --stats} of the file, as JSON. */
+        @Nullable
+        private final String stats;
+
+        private FormattedFile(
+                @Nullable String readError, boolean changed, @Nullable String formatted, @Nullable String stats) {
+            this.readError = readError;
+            this.changed = changed;
+            this.formatted = formatted;
+            this.stats = stats;
+        }
+
+        static FormattedFile readError(String message) {
+            return new FormattedFile(message, false, null, null);
+        }
+
+        static FormattedFile of(
+                CommandLineOptions parameters, boolean changed, String formatted, @Nullable String stats) {
+            boolean needsOutput = parameters.inPlace() ? changed : !parameters.dryRun();
+            return new FormattedFile(null, changed, needsOutput ? formatted : null, stats);
+        }
+
+        String formatted() {
+            return Preconditions.checkNotNull(formatted, "formatted output was not retained");
+        }
+    }
+
     /** Parses and validates command-line flags. */
     public static CommandLineOptions processArgs(String... args) throws UsageException {
         CommandLineOptions parameters;
@@ -229,20 +419,32 @@ public final class Main {
         if (parameters.stdin()) {
             filesToFormat++;
         }
+        if (parameters.filesFrom().isPresent()) {
+            filesToFormat++;
+        }
 
-        if (parameters.inPlace() && parameters.files().isEmpty()) {
+        if (parameters.inPlace() && parameters.files().isEmpty() && parameters.filesFrom().isEmpty()) {
             throw new UsageException("in-place formatting was requested but no files were provided");
         }
-        if (parameters.isSelection() && filesToFormat != 1) {
+        if (parameters.isSelection()
+                && (filesToFormat != 1
+                        || parameters.filesFrom().isPresent()
+                        || parameters.files().stream().anyMatch(fileName -> Files.isDirectory(Paths.get(fileName))))) {
             throw new UsageException("partial formatting is only support for a single file");
         }
+        if (parameters.threads().isPresent() && parameters.threads().get() < 1) {
+            throw new UsageException("--threads must be at least 1");
+        }
         if (parameters.offsets().size() != parameters.lengths().size()) {
             throw new UsageException("-offsets and -lengths flags must be provided in matching pairs");
         }
-        if (filesToFormat <= 0 && !parameters.version() && !parameters.help()) {
+        if (parameters.worker() && filesToFormat > 0) {
+            throw new UsageException("cannot run as a worker and format files simultaneously");
+        }
+        if (filesToFormat <= 0 && !parameters.version() && !parameters.help() && !parameters.worker()) {
             throw new UsageException("no files were provided");
         }
-        if (parameters.stdin() && !parameters.files().isEmpty()) {
+        if (parameters.stdin() && filesToFormat > 1) {
             throw new UsageException("cannot format from standard input and files simultaneously");
         }
         if (parameters.assumeFilename().isPresent() && !parameters.stdin()) {
@@ -43,8 +43,6 @@ import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
 import com.sun.tools.javac.tree.JCTree.JCFieldAccess;
 import com.sun.tools.javac.tree.JCTree.JCIdent;
 import com.sun.tools.javac.tree.JCTree.JCImport;
-import com.sun.tools.javac.util.Context;
-import com.sun.tools.javac.util.Options;
 import java.lang.reflect.Method;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -198,22 +196,22 @@ public class RemoveUnusedImports {
     }
 
     public static String removeUnusedImports(final String contents) throws FormatterException {
-        Context context = new Context();
-        JCCompilationUnit unit = parse(context, contents);
+        return removeUnusedImports(contents, new CompilationUnitCache());
+    }
+
+    /** Removes unused imports, reusing the cached parse of {@code contents} if there is one. */
+    static String removeUnusedImports(final String contents, CompilationUnitCache compilationUnitCache)
+            throws FormatterException {
+        JCCompilationUnit unit = compilationUnitCache.parse(contents);
         if (unit == null) {
             // error handling is done during formatting
             return contents;
         }
-        UnusedImportScanner scanner = new UnusedImportScanner(JavacTrees.instance(context));
+        UnusedImportScanner scanner = new UnusedImportScanner(JavacTrees.instance(compilationUnitCache.context()));
         scanner.scan(unit, null);
         return applyReplacements(contents, buildReplacements(contents, unit, scanner.usedNames, scanner.usedInJavadoc));
     }
 
-    private static JCCompilationUnit parse(Context context, String javaInput) throws FormatterException {
-        Options.instance(context).put("allowStringFolding", "false");
-        return Formatter.parseJcCompilationUnit(context, javaInput);
-    }
-
     /** Construct replacements to fix unused imports. */
     private static RangeMap<Integer, String> buildReplacements(
             String contents,
@@ -32,8 +32,6 @@ import com.sun.source.tree.Tree.Kind;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.TreePathScanner;
 import com.sun.tools.javac.tree.JCTree;
-import com.sun.tools.javac.util.Context;
-import com.sun.tools.javac.util.Options;
 import com.sun.tools.javac.util.Position;
 import com.sun.tools.javac.util.Position.LineMap;
 import java.util.ArrayDeque;
@@ -49,29 +47,40 @@ import java.util.stream.Stream;
 public final class StringWrapper {
     /** Reflows string literals in the given Java source code that extend past the given column limit. */
     static String wrap(final int columnLimit, String input, Formatter formatter) throws FormatterException {
+        return wrap(columnLimit, input, formatter, new CompilationUnitCache());
+    }
+
+    /**
+     * Reflows long string literals, sharing parses of identical text with the other passes through
+     * {@code compilationUnitCache}.
+     */
+    static String wrap(
+            final int columnLimit, String input, Formatter formatter, CompilationUnitCache compilationUnitCache)
+            throws FormatterException {
         if (!longLines(columnLimit, input)) {
             // fast path
             return input;
         }
 
-        TreeRangeMap<Integer, String> replacements = getReflowReplacements(columnLimit, input);
+        TreeRangeMap<Integer, String> replacements = getReflowReplacements(columnLimit, input, compilationUnitCache);
         String firstPass =
-                formatter.formatSource(input, replacements.asMapOfRanges().keySet());
+                formatter.formatSource(input, replacements.asMapOfRanges().keySet(), compilationUnitCache);
 
         if (!firstPass.equals(input)) {
             // If formatting the replacement ranges resulted in a change, recalculate the replacements on
             // the updated input.
             input = firstPass;
-            replacements = getReflowReplacements(columnLimit, input);
+            replacements = getReflowReplacements(columnLimit, input, compilationUnitCache);
         }
 
         String result = applyReplacements(input, replacements);
 
         // Format again, because broken strings might now fit on the first line in case of assignments
-        String secondPass = formatter.formatSource(result, rangesAfterAppliedReplacements(replacements));
+        String secondPass =
+                formatter.formatSource(result, rangesAfterAppliedReplacements(replacements), compilationUnitCache);
 
         if (!secondPass.equals(result)) {
-            replacements = getReflowReplacements(columnLimit, secondPass);
+            replacements = getReflowReplacements(columnLimit, secondPass, compilationUnitCache);
             result = applyReplacements(secondPass, replacements);
         }
 
@@ -113,9 +122,9 @@ public final class StringWrapper {
         return outputRanges.build();
     }
 
-    private static TreeRangeMap<Integer, String> getReflowReplacements(int columnLimit, final String input)
-            throws FormatterException {
-        JCTree.JCCompilationUnit unit = parse(input, /* allowStringFolding= */ false);
+    private static TreeRangeMap<Integer, String> getReflowReplacements(
+            int columnLimit, final String input, CompilationUnitCache compilationUnitCache) throws FormatterException {
+        JCTree.JCCompilationUnit unit = compilationUnitCache.parse(input);
         String separator = Newlines.guessLineSeparator(input);
 
         // Paths to string literals that extend past the column limit.
@@ -394,9 +403,7 @@ public final class StringWrapper {
 
     /** Parses the given Java source. */
     private static JCTree.JCCompilationUnit parse(String source, boolean allowStringFolding) throws FormatterException {
-        Context context = new Context();
-        Options.instance(context).put("allowStringFolding", Boolean.toString(allowStringFolding));
-        return Formatter.parseJcCompilationUnit(context, source);
+        return JavacSession.forThread(allowStringFolding).parse(source);
     }
 
     /** Applies replacements to the given string. */
@@ -30,7 +30,7 @@ final class UsageException extends Exception {
 
     private static final String[] USAGE = {
         "",
-        "Usage: palantir-java-format [options] file(s)",
+        "Usage: palantir-java-format [options] file(s) and/or directories",
         "",
         "Options:",
         "  -i, -r, -replace, --replace",
@@ -69,6 +69,24 @@ final class UsageException extends Exception {
         "    Print the version.",
         "  --output-replacements, -output-replacements",
         "    Outputs formatting replacements instead of the full formatted file.",
+        "  --cache-dir <dir>",
+        "    Remember already formatted file contents in <dir> and skip them on later runs.",
+        "  --include <glob>",
+        "    Format the files in directories that match <glob>, relative to the directory (default is *.java files).",
+        "  --exclude <glob>",
+        "    Skip files and directories that match <glob>, relative to the directory they are found in.",
+        "  --files-from <filename>",
+        "    Also format the files listed in <filename>, one per line. Use - to read the list from stdin.",
+        "  --respect-gitignore",
+        "    Skip files and directories in directories that are ignored by git.",
+        "  --threads <n>",
+        "    Format up to <n> files in parallel (default is the number of available processors).",
+        "  --stats",
+        "    Print the time of each formatting phase and the work of the layout search to stderr, as JSON per file.",
+        "  --parallel-layout",
+        "    Also lay out the large members of each file in parallel, which helps when formatting few large files.",
+        "  --worker",
+        "    Run as a long-lived worker that serves length-prefixed formatting requests from stdin.",
         "  @<filename>",
         "    Read options and filenames from file.",
         "",
@@ -78,7 +96,10 @@ final class UsageException extends Exception {
         "If -i is given with -, the result is sent to stdout.",
         "The --lines, --offset, and --length flags may be given more than once.",
         "The --offset and --length flags must be given an equal number of times.",
-        "If --lines, --offset, or --length are given, only one file (or -) may be given."
+        "If --lines, --offset, or --length are given, only one file (or -) may be given.",
+        "Directories are searched recursively. The --include and --exclude flags may be given more than once.",
+        "Files that are given explicitly are skipped if they do not pass --include, --exclude and --respect-gitignore.",
+        "A glob that starts with **/ also matches at the top level, so **/*.java matches A.java as well as a/A.java."
     };
 
     UsageException() {
@@ -25,6 +25,7 @@ import com.google.common.collect.Iterables;
 import com.palantir.javaformat.Op;
 import com.palantir.javaformat.OpsBuilder;
 import com.palantir.javaformat.OpsBuilder.BlankLineWanted;
+import com.palantir.javaformat.java.CancellationToken;
 import com.palantir.javaformat.java.JavaInputAstVisitor;
 import com.sun.source.tree.BindingPatternTree;
 import com.sun.source.tree.BlockTree;
@@ -67,6 +68,10 @@ public class Java14InputAstVisitor extends JavaInputAstVisitor {
         super(builder, indentMultiplier);
     }
 
+    public Java14InputAstVisitor(OpsBuilder builder, int indentMultiplier, CancellationToken cancellationToken) {
+        super(builder, indentMultiplier, cancellationToken);
+    }
+
     @Override
     protected void handleModule(boolean first, CompilationUnitTree node) {
         if (COMPILATION_UNIT_TREE_GET_MODULE == null) {
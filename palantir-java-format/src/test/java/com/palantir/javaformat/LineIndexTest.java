@@ -0,0 +1,57 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+@Execution(ExecutionMode.CONCURRENT)
+public class LineIndexTest {
+
+    @Test
+    public void startsMatchLineOffsets() {
+        for (String text : ImmutableList.of("", "foo", "foo\nbar\n", "foo\rbar", "foo\r\nbar\r\n", "\n\r\n\r\r")) {
+            LineIndex index = LineIndex.of(text);
+            ImmutableList<Integer> offsets = ImmutableList.copyOf(Newlines.lineOffsetIterator(text));
+
+            assertThat(index.lineCount()).isEqualTo(offsets.size());
+            for (int line = 0; line < offsets.size(); line++) {
+                assertThat(index.lineStart(line)).isEqualTo(offsets.get(line));
+            }
+        }
+    }
+
+    @Test
+    public void linesAndColumns() {
+        LineIndex index = LineIndex.of("foo\r\nbar\n\nbaz");
+
+        assertThat(index.lineOf(0)).isEqualTo(0);
+        assertThat(index.lineOf(4)).isEqualTo(0);
+        assertThat(index.lineOf(5)).isEqualTo(1);
+        assertThat(index.lineOf(9)).isEqualTo(2);
+        assertThat(index.lineOf(10)).isEqualTo(3);
+        assertThat(index.lineOf(13)).isEqualTo(3);
+        assertThat(index.columnOf(7)).isEqualTo(2);
+        assertThat(index.columnOf(12)).isEqualTo(2);
+        assertThat(index.lineEnd(0)).isEqualTo(5);
+        assertThat(index.lineEnd(3)).isEqualTo(13);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.doc;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+@Execution(ExecutionMode.CONCURRENT)
+public class HasUniqueIdTest {
+
+    @Test
+    public void runsAllocateDenseIds() {
+        assertThat(new BreakTag().id()).isLessThan(0);
+        try (HasUniqueId.Run _outer = HasUniqueId.startRun()) {
+            assertThat(new BreakTag().id()).isEqualTo(0);
+            assertThat(new BreakTag().id()).isEqualTo(1);
+            try (HasUniqueId.Run _inner = HasUniqueId.startRun()) {
+                assertThat(new BreakTag().id()).isEqualTo(0);
+            }
+            assertThat(new BreakTag().id()).isEqualTo(2);
+        }
+        assertThat(new BreakTag().id()).isLessThan(0);
+    }
+
+    @Test
+    public void unscopedObjectsDoNotTakeRunIds() {
+        try (HasUniqueId.Run _run = HasUniqueId.startRun()) {
+            assertThat(new BreakTag().id()).isEqualTo(0);
+            assertThat(HasUniqueId.unscoped(BreakTag::new).id()).isLessThan(0);
+            assertThat(new BreakTag().id()).isEqualTo(1);
+        }
+    }
+}
@@ -191,4 +191,22 @@ public class CommandLineOptionsParserTest {
                         .reflowLongStrings())
                 .isFalse();
     }
+
+    @Test
+    public void threads() {
+        assertThat(CommandLineOptionsParser.parse(Collections.<String>emptyList()).threads())
+                .isEmpty();
+        assertThat(CommandLineOptionsParser.parse(Arrays.asList("--threads", "64")).threads())
+                .hasValue(64);
+        assertThat(CommandLineOptionsParser.parse(Arrays.asList("--threads=1")).threads())
+                .hasValue(1);
+    }
+
+    @Test
+    public void parallelLayout() {
+        assertThat(CommandLineOptionsParser.parse(Collections.<String>emptyList()).parallelLayout())
+                .isFalse();
+        assertThat(CommandLineOptionsParser.parse(Arrays.asList("--parallel-layout")).parallelLayout())
+                .isTrue();
+    }
 }
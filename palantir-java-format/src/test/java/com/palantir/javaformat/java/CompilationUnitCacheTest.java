@@ -0,0 +1,56 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+@Execution(ExecutionMode.CONCURRENT)
+public class CompilationUnitCacheTest {
+
+    @Test
+    public void reusesParseOfIdenticalText() throws Exception {
+        CompilationUnitCache cache = new CompilationUnitCache();
+        String source = "class A {}\n";
+
+        assertThat(cache.parse(source)).isSameInstanceAs(cache.parse(new StringBuilder(source).toString()));
+    }
+
+    @Test
+    public void reparsesChangedText() throws Exception {
+        CompilationUnitCache cache = new CompilationUnitCache();
+
+        assertThat(cache.parse("class A {}\n")).isNotSameInstanceAs(cache.parse("class B {}\n"));
+    }
+
+    @Test
+    public void sharedCacheGivesSameResultAsSeparatePasses() throws Exception {
+        String input = "import java.util.List;\nimport java.util.Map;\n\nclass A {\n  Map<String, String> m;\n}\n";
+        Formatter formatter = Formatter.create();
+
+        String expected = RemoveUnusedImports.removeUnusedImports(formatter.formatSource(input));
+
+        CompilationUnitCache cache = new CompilationUnitCache();
+        String formatted = formatter.formatSource(input, ImmutableList.of(Range.closedOpen(0, input.length())), cache);
+        assertThat(RemoveUnusedImports.removeUnusedImports(formatted, cache)).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ObjectArrays;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+@Execution(ExecutionMode.CONCURRENT)
+public class FileDiscoveryTest {
+
+    @TempDir
+    public Path testFolder;
+
+    @Test
+    public void walksDirectoriesInOrder() throws Exception {
+        write("b/B.java", "a/z/Z.java", "a/A.java", "a/notes.txt", "C.java");
+
+        assertThat(discover(testFolder.toString()))
+                .containsExactly("C.java", "a/A.java", "a/z/Z.java", "b/B.java")
+                .inOrder();
+    }
+
+    @Test
+    public void appliesIncludesAndExcludes() throws Exception {
+        write("src/A.java", "src/ATest.java", "generated/G.java", "src/generated/H.java");
+
+        assertThat(discover("--include=**Test.java", testFolder.toString())).containsExactly("src/ATest.java");
+        assertThat(discover("--exclude=generated", "--exclude=**/generated", testFolder.toString()))
+                .containsExactly("src/A.java", "src/ATest.java")
+                .inOrder();
+    }
+
+    @Test
+    public void respectsGitignore() throws Exception {
+        write("A.java", "build/B.java", "src/C.java", "src/D.java", "src/E.java", "other/build/F.java");
+        Files.createDirectories(testFolder.resolve(".git"));
+        Files.write(testFolder.resolve(".gitignore"), "build/\n/other\n".getBytes(UTF_8));
+        Files.write(testFolder.resolve("src/.gitignore"), "*.java\n!D.java\n".getBytes(UTF_8));
+
+        assertThat(discover(testFolder.toString())).hasSize(6);
+        assertThat(discover("--respect-gitignore", testFolder.toString()))
+                .containsExactly("A.java", "src/D.java")
+                .inOrder();
+        assertThat(discover("--respect-gitignore", testFolder.resolve("src").toString()))
+                .containsExactly("src/D.java");
+    }
+
+    @Test
+    public void filtersExplicitFilesLikeDiscoveredOnes() throws Exception {
+        write("src/A.java", "src/ATest.java", "build/B.java");
+        Files.createDirectories(testFolder.resolve(".git"));
+        Files.write(testFolder.resolve(".gitignore"), "build/\n".getBytes(UTF_8));
+        String[] files = {
+            testFolder.resolve("src/A.java").toString(),
+            testFolder.resolve("src/ATest.java").toString(),
+            testFolder.resolve("build/B.java").toString()
+        };
+
+        assertThat(discover(files)).containsExactly("src/A.java", "src/ATest.java", "build/B.java");
+        assertThat(discover(ObjectArrays.concat("--include=**Test.java", files))).containsExactly("src/ATest.java");
+        assertThat(discover(ObjectArrays.concat("--exclude=**Test.java", files)))
+                .containsExactly("src/A.java", "build/B.java");
+        assertThat(discover(ObjectArrays.concat("--respect-gitignore", files)))
+                .containsExactly("src/A.java", "src/ATest.java");
+    }
+
+    @Test
+    public void leadingAnyDirectoriesMatchesTopLevelFiles() throws Exception {
+        write("C.java", "a/A.java", "a/notes.txt");
+
+        assertThat(discover("--include=**/*.java", testFolder.toString()))
+                .containsExactly("C.java", "a/A.java")
+                .inOrder();
+        assertThat(discover("--exclude=**/C.java", testFolder.toString())).containsExactly("a/A.java");
+        assertThat(discover("--include=**/*.java", "--exclude=**/C.java", testFolder.resolve("C.java").toString()))
+                .isEmpty();
+        assertThat(FileDiscovery.glob("**/*.java").matches(Paths.get("C.java"))).isTrue();
+        assertThat(FileDiscovery.glob("**/*.java").matches(Paths.get("a/C.java"))).isTrue();
+        assertThat(FileDiscovery.glob("**/*.java").matches(Paths.get("C.txt"))).isFalse();
+    }
+
+    @Test
+    public void mainFormatsDirectoriesAndFileLists() throws Exception {
+        write("dir/A.java", "dir/B.java", "C.java");
+        String fileList = testFolder.resolve("C.java") + "\n\n";
+
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        Main main = new Main(
+                new PrintWriter(out, true),
+                new PrintWriter(err, true),
+                new ByteArrayInputStream(fileList.getBytes(UTF_8)));
+
+        assertThat(main.format("-n", "--files-from", "-", testFolder.resolve("dir").toString()))
+                .isEqualTo(0);
+        assertThat(out.toString())
+                .isEqualTo(ImmutableList.of("dir/A.java", "dir/B.java", "C.java").stream()
+                        .map(file -> testFolder.resolve(file) + System.lineSeparator())
+                        .collect(Collectors.joining()));
+        assertThat(err.toString()).isEmpty();
+    }
+
+    @Test
+    public void mainReportsUnreadableFileList() throws Exception {
+        write("C.java");
+        Path fileList = testFolder.resolve("files.txt");
+        // Not UTF-8, which fails only once the lines are read.
+        Files.write(fileList, new byte[] {'C', '.', (byte) 0xff, '\n'});
+
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in);
+
+        assertThat(main.format("-n", "--files-from", fileList.toString())).isEqualTo(1);
+        assertThat(err.toString()).startsWith(fileList + ": could not read file list: ");
+    }
+
+    private void write(String... files) throws IOException {
+        for (String file : files) {
+            Path path = testFolder.resolve(file);
+            Files.createDirectories(path.getParent());
+            Files.write(path, "class T{}\n".getBytes(UTF_8));
+        }
+    }
+
+    private List<String> discover(String... args) throws UsageException {
+        CommandLineOptions parameters = Main.processArgs(args);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            FileDiscovery discovery =
+                    new FileDiscovery(parameters, executor, new PrintWriter(new StringWriter(), true));
+            List<String> files = new ArrayList<>();
+            discovery
+                    .files(parameters.files().iterator())
+                    .forEachRemaining(path -> files.add(testFolder.relativize(path).toString()));
+            assertThat(discovery.hadErrors()).isFalse();
+            return files;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+@Execution(ExecutionMode.CONCURRENT)
+public class FormatResultCacheTest {
+
+    @TempDir
+    public Path testFolder;
+
+    @Test
+    public void remembersFormattedContentAcrossRuns() throws Exception {
+        FormatResultCache first = FormatResultCache.open(testFolder, 10, "v1");
+        assertThat(first.isKnownFormatted("class A {}\n")).isFalse();
+        first.markFormatted("class A {}\n");
+        first.save();
+
+        FormatResultCache second = FormatResultCache.open(testFolder, 10, "v1");
+        assertThat(second.isKnownFormatted("class A {}\n")).isTrue();
+        assertThat(second.isKnownFormatted("class B {}\n")).isFalse();
+    }
+
+    @Test
+    public void differentFingerprintMisses() throws Exception {
+        FormatResultCache first = FormatResultCache.open(testFolder, 10, "v1");
+        first.markFormatted("class A {}\n");
+        first.save();
+
+        assertThat(FormatResultCache.open(testFolder, 10, "v2").isKnownFormatted("class A {}\n"))
+                .isFalse();
+    }
+
+    @Test
+    public void mergesConcurrentWritersAndEvictsLeastRecentlyUsed() throws Exception {
+        FormatResultCache one = FormatResultCache.open(testFolder, 2, "v1");
+        FormatResultCache two = FormatResultCache.open(testFolder, 2, "v1");
+        one.markFormatted("class A {}\n");
+        one.save();
+        Thread.sleep(5);
+        two.markFormatted("class B {}\n");
+        two.save();
+        Thread.sleep(5);
+        FormatResultCache three = FormatResultCache.open(testFolder, 2, "v1");
+        three.markFormatted("class C {}\n");
+        three.save();
+
+        FormatResultCache result = FormatResultCache.open(testFolder, 2, "v1");
+        assertThat(result.isKnownFormatted("class A {}\n")).isFalse();
+        assertThat(result.isKnownFormatted("class B {}\n")).isTrue();
+        assertThat(result.isKnownFormatted("class C {}\n")).isTrue();
+    }
+
+    @Test
+    public void mainSkipsCachedFiles() throws Exception {
+        Path cacheDir = testFolder.resolve("cache");
+        Path file = testFolder.resolve("A.java");
+        Files.write(file, "class A {}\n".getBytes(UTF_8));
+
+        StringWriter out = new StringWriter();
+        Main main = new Main(new PrintWriter(out, true), new PrintWriter(new StringWriter(), true), System.in);
+        String[] args = {"-n", "--cache-dir", cacheDir.toString(), file.toString()};
+        assertThat(main.format(args)).isEqualTo(0);
+
+        FormatResultCache cache = FormatResultCache.open(
+                cacheDir, CommandLineOptionsParser.parse(Arrays.asList(args)), JavaFormatterOptions.defaultOptions());
+        assertThat(cache.isKnownFormatted("class A {}\n")).isTrue();
+        assertThat(out.toString()).isEmpty();
+    }
+
+    @Test
+    public void mainRemembersFilesFormattedInPlace() throws Exception {
+        Path cacheDir = testFolder.resolve("cache");
+        Path file = testFolder.resolve("A.java");
+        Files.write(file, "class A{}\n".getBytes(UTF_8));
+
+        Main main = new Main(
+                new PrintWriter(new StringWriter(), true), new PrintWriter(new StringWriter(), true), System.in);
+        String[] args = {"-i", "--cache-dir", cacheDir.toString(), file.toString()};
+        assertThat(main.format(args)).isEqualTo(0);
+
+        String formatted = new String(Files.readAllBytes(file), UTF_8);
+        assertThat(formatted).isEqualTo("class A {}\n");
+        FormatResultCache cache = FormatResultCache.open(
+                cacheDir, CommandLineOptionsParser.parse(Arrays.asList(args)), JavaFormatterOptions.defaultOptions());
+        assertThat(cache.isKnownFormatted(formatted)).isTrue();
+    }
+}
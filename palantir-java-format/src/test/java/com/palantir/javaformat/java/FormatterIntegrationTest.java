@@ -90,6 +90,22 @@ public class FormatterIntegrationTest {
                 isDebugMode());
     }
 
+    @TestTemplate
+    public void streamedOps() {
+        assumeJavaVersionForTest(name);
+        Assumptions.assumeFalse(isRecreate(), "Not running when recreating test outputs");
+        try {
+            String output = Formatter.createFormatter(JavaFormatterOptions.builder()
+                            .style(JavaFormatterOptions.Style.PALANTIR)
+                            .streamOps(true)
+                            .build())
+                    .formatSource(input);
+            assertThat(output).describedAs("bad output for " + name).isEqualTo(expected);
+        } catch (FormatterException e) {
+            throw new RuntimeException(String.format("Formatter crashed on %s", name), e);
+        }
+    }
+
     @TestTemplate
     public void idempotentLF() {
         assumeJavaVersionForTest(name);
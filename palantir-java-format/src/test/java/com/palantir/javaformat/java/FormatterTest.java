@@ -21,7 +21,10 @@ import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
 import com.google.common.io.CharStreams;
+import com.palantir.javaformat.Utils;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -31,6 +34,12 @@ import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.api.parallel.Execution;
@@ -443,4 +452,144 @@ public final class FormatterTest {
                                 + "}"))
                 .doesNotThrowAnyException();
     }
+
+    @Test
+    public void parallelLayoutGivesSameOutput() throws Exception {
+        String input = largeClass();
+        JavaFormatterOptions.Builder options = JavaFormatterOptions.builder().style(Style.PALANTIR);
+
+        String sequential = Formatter.createFormatter(options.build()).formatSource(input);
+        String parallel = Formatter.createFormatter(options.parallelLayout(true).build()).formatSource(input);
+        assertThat(parallel).isEqualTo(sequential);
+    }
+
+    @Test
+    public void parallelLayoutGivesSameOutputUnderBudget() throws Exception {
+        String input = largeClass();
+        ImmutableList<Range<Integer>> ranges = ImmutableList.of(Range.closedOpen(0, input.length()));
+
+        for (long explorationLimit : new long[] {100, 2_000, 20_000}) {
+            JavaFormatterOptions.Builder options = JavaFormatterOptions.builder()
+                    .style(Style.PALANTIR)
+                    .formatBudget(FormatBudget.explorationLimit(explorationLimit));
+            FormatResult sequential = Formatter.createFormatter(options.build()).getFormatResult(input, ranges);
+            Formatter parallel = Formatter.createFormatter(options.parallelLayout(true).build());
+            for (int run = 0; run < 3; run++) {
+                FormatResult result = parallel.getFormatResult(input, ranges);
+                assertThat(result.replacements()).isEqualTo(sequential.replacements());
+                assertThat(result.isDegraded()).isEqualTo(sequential.isDegraded());
+            }
+        }
+    }
+
+    /** A class whose methods are large enough to be laid out in the background. */
+    private static String largeClass() {
+        StringBuilder input = new StringBuilder("class A {\n");
+        for (int i = 0; i < 8; i++) {
+            input.append("  java.util.List<String> method").append(i).append("(java.util.List<String> items) {\n");
+            for (int j = 0; j < 30; j++) {
+                input.append("    items = items.stream().filter(item -> item.length() > ")
+                        .append(j)
+                        .append(").map(item -> item + \"suffix\").collect(java.util.stream.Collectors.toList());\n");
+            }
+            input.append("    return items;\n  }\n");
+        }
+        return input.append("}\n").toString();
+    }
+
+    @Test
+    public void exhaustedBudgetBreaksNormally() throws Exception {
+        String input = "class A {\n  void f() {\n    items = items.stream().filter(item -> item.length() > 1)"
+                + ".map(item -> item + \"suffix\").collect(java.util.stream.Collectors.toList());\n  }\n}\n";
+        ImmutableList<Range<Integer>> ranges = ImmutableList.of(Range.closedOpen(0, input.length()));
+        JavaFormatterOptions.Builder options = JavaFormatterOptions.builder().style(Style.PALANTIR);
+
+        FormatResult unlimited = Formatter.createFormatter(options.build()).getFormatResult(input, ranges);
+        FormatResult exhausted = Formatter.createFormatter(
+                        options.formatBudget(FormatBudget.explorationLimit(0)).build())
+                .getFormatResult(input, ranges);
+
+        assertThat(unlimited.isDegraded()).isFalse();
+        assertThat(exhausted.isDegraded()).isTrue();
+        String degradedOutput = Utils.applyReplacements(input, exhausted.replacements());
+        assertThat(Formatter.create().formatSource(degradedOutput))
+                .isEqualTo(Formatter.create().formatSource(input));
+    }
+
+    @Test
+    public void cancelledFormatStops() {
+        String input = "class A {\n  void f() {\n    items = items.stream().filter(item -> item.length() > 1)"
+                + ".map(item -> item + \"suffix\").collect(java.util.stream.Collectors.toList());\n  }\n}\n";
+        ImmutableList<Range<Integer>> ranges = ImmutableList.of(Range.closedOpen(0, input.length()));
+        Formatter formatter = Formatter.create();
+
+        for (int checksBeforeCancel : new int[] {0, 20}) {
+            AtomicInteger checks = new AtomicInteger();
+            assertThatThrownBy(() -> formatter.getFormatReplacements(
+                            input, ranges, () -> checks.incrementAndGet() > checksBeforeCancel))
+                    .isInstanceOf(CancellationException.class);
+        }
+    }
+
+    @Test
+    public void listenerIsToldAboutEveryPhase() throws Exception {
+        String input = "import java.util.List;\nclass A {\n  void f() {\n    g(\"é\");\n  }\n}\n";
+        Set<FormatListener.Phase> phases = EnumSet.noneOf(FormatListener.Phase.class);
+        AtomicInteger bytes = new AtomicInteger();
+        AtomicInteger tokens = new AtomicInteger();
+        FormatListener listener = new FormatListener() {
+            @Override
+            public void inputLexed(int inputBytes, int inputTokens) {
+                bytes.set(inputBytes);
+                tokens.set(inputTokens);
+            }
+
+            @Override
+            public void phaseFinished(FormatListener.Phase phase, long nanos) {
+                assertThat(nanos).isAtLeast(0L);
+                phases.add(phase);
+            }
+        };
+
+        Formatter.create().withListener(listener).formatSourceAndFixImports(input);
+
+        assertThat(phases).containsExactlyElementsIn(EnumSet.allOf(FormatListener.Phase.class));
+        assertThat(bytes.get()).isEqualTo(input.getBytes(StandardCharsets.UTF_8).length);
+        assertThat(tokens.get()).isGreaterThan(0);
+    }
+
+    @Test
+    public void listenerIsToldAboutEachPhaseOncePerFormat() throws Exception {
+        String input = "class A {\n  void f() {\n    g();\n  }\n}\n";
+        List<FormatListener.Phase> phases = new ArrayList<>();
+        FormatListener listener = new FormatListener() {
+            @Override
+            public void phaseFinished(FormatListener.Phase phase, long nanos) {
+                phases.add(phase);
+            }
+        };
+
+        Formatter.create().withListener(listener).formatSource(input);
+
+        assertThat(phases)
+                .containsExactly(
+                        FormatListener.Phase.LEX,
+                        FormatListener.Phase.PARSE,
+                        FormatListener.Phase.VISIT,
+                        FormatListener.Phase.DOC_BUILD,
+                        FormatListener.Phase.COMPUTE_BREAKS,
+                        FormatListener.Phase.WRITE,
+                        FormatListener.Phase.REPLACEMENTS)
+                .inOrder();
+    }
+
+    @Test
+    public void parsesAfterErrorsOnTheSameThread() throws Exception {
+        Formatter formatter = Formatter.create();
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> formatter.formatSource("class A { void f() { int x = ; } }\n"))
+                    .isInstanceOf(FormatterException.class);
+            assertThat(formatter.formatSource("class A {  }\n")).isEqualTo("class A {}\n");
+        }
+    }
 }
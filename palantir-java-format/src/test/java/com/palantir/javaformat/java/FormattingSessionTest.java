@@ -0,0 +1,77 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+@Execution(ExecutionMode.CONCURRENT)
+public class FormattingSessionTest {
+
+    @Test
+    public void editsGiveSameResultAsFreshFormatter() throws Exception {
+        Formatter formatter = Formatter.create();
+        FormattingSession session = new FormattingSession(formatter);
+
+        for (int edit = 0; edit < 4; edit++) {
+            String input = source(edit);
+            assertThat(session.formatSource(input)).isEqualTo(formatter.formatSource(input));
+        }
+    }
+
+    @Test
+    public void repeatedRequestGivesSameResult() throws Exception {
+        FormattingSession session = new FormattingSession(Formatter.create());
+        String input = source(0);
+
+        assertThat(session.formatSource(input)).isEqualTo(session.formatSource(input));
+    }
+
+    @Test
+    public void documentSessionServiceGivesSameReplacementsAsService() throws Exception {
+        FormatterService service = new FormatterServiceImpl();
+        FormatterService documentSession = service.newDocumentSession();
+
+        for (int edit = 0; edit < 4; edit++) {
+            String input = source(edit);
+            ImmutableList<Range<Integer>> ranges = ImmutableList.of(Range.closedOpen(0, input.length()));
+            assertThat(documentSession.getFormatReplacements(input, ranges))
+                    .isEqualTo(service.getFormatReplacements(input, ranges));
+        }
+    }
+
+    /** A class whose methods are large enough to be cached, with one method changed by each {@code edit}. */
+    private static String source(int edit) {
+        StringBuilder source = new StringBuilder("class A {\n");
+        for (int i = 0; i < 5; i++) {
+            source.append("  java.util.List<String> method").append(i).append("(java.util.List<String> items) {\n");
+            for (int j = 0; j < 20; j++) {
+                source.append("    items = items.stream().filter(item -> item.length() > ")
+                        .append(i == edit ? j + 100 : j)
+                        .append(").map(item -> item + \"suffix\").collect(java.util.stream.Collectors.toList());\n");
+            }
+            source.append("    return items;\n  }\n");
+        }
+        return source.append("}\n").toString();
+    }
+}
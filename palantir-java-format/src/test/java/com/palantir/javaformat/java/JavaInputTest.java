@@ -0,0 +1,87 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.palantir.javaformat.Input;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+@Execution(ExecutionMode.CONCURRENT)
+public class JavaInputTest {
+
+    @Test
+    public void toksOfTokensCoverInput() throws Exception {
+        String input = "package p;\n\n"
+                + "class A { // comment\n"
+                + "    /** Javadoc. */\n"
+                + "    int f(int x) {\n"
+                + "        return x >>= 2; /* trailing */\n"
+                + "    }\n"
+                + "}\n";
+        JavaInput javaInput = new JavaInput(input);
+
+        StringBuilder text = new StringBuilder();
+        for (Input.Token token : javaInput.getTokens()) {
+            for (Input.Tok tok : token.getToksBefore()) {
+                text.append(tok.getOriginalText());
+            }
+            text.append(token.getTok().getOriginalText());
+            for (Input.Tok tok : token.getToksAfter()) {
+                text.append(tok.getOriginalText());
+            }
+        }
+        assertThat(text.toString()).isEqualTo(input);
+    }
+
+    @Test
+    public void commonToksShareTheirText() throws Exception {
+        JavaInput first = new JavaInput("class A {\n    int x;\n}\n");
+        JavaInput second = new JavaInput("class B {\n    int y;\n}\n");
+
+        assertThat(first.getTokens().get(2).getTok().getText())
+                .isSameInstanceAs(second.getTokens().get(2).getTok().getText());
+        assertThat(first.getTokens().get(3).getToksBefore().get(0).getText())
+                .isSameInstanceAs(second.getTokens().get(3).getToksBefore().get(0).getText());
+    }
+
+    @Test
+    public void onlyLiteralsWithEscapesAreDecoded() throws Exception {
+        JavaInput javaInput = new JavaInput("class A {\n  String x = \"plain\";\n  String y = \"a\\u0041\";\n}\n");
+
+        Input.Tok plain = javaInput.getTokens().get(6).getTok();
+        assertThat(plain.getOriginalText()).isEqualTo("\"plain\"");
+        assertThat(plain.getText()).isSameInstanceAs(plain.getOriginalText());
+        Input.Tok escaped = javaInput.getTokens().get(11).getTok();
+        assertThat(escaped.getOriginalText()).isEqualTo("\"a\\u0041\"");
+        assertThat(escaped.getText()).isEqualTo("\"aA\"");
+    }
+
+    @Test
+    public void textBlocksAreDecoded() throws Exception {
+        Assumptions.assumeTrue(Formatter.getRuntimeVersion() >= 15, "Not running on jdk 15 or later");
+        String textBlock = "\"\"\"\n      hello\n      \"\"\"";
+        JavaInput javaInput = new JavaInput("class A {\n  String x = " + textBlock + ";\n}\n");
+
+        Input.Tok tok = javaInput.getTokens().get(6).getTok();
+        assertThat(tok.getOriginalText()).isEqualTo(textBlock);
+        assertThat(tok.getText()).isEqualTo("\"hello\n\"");
+    }
+}
@@ -18,6 +18,8 @@ import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assertWithMessage;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.ByteStreams;
@@ -27,13 +29,16 @@ import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.lang.ProcessBuilder.Redirect;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Locale;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -353,6 +358,27 @@ public class MainTest {
         assertThat(err.toString()).isEmpty();
     }
 
+    @Test
+    public void statsStdin() throws Exception {
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        String input = "class Test {\n  void f() {\n    g(1, 2);\n  }\n}\n";
+        Main main = new Main(
+                new PrintWriter(out, true),
+                new PrintWriter(err, true),
+                new ByteArrayInputStream(input.getBytes(UTF_8)));
+        assertThat(main.format("--stats", "-")).isEqualTo(0);
+        assertThat(out.toString()).isEqualTo(input);
+
+        JsonNode stats = new ObjectMapper().readTree(err.toString());
+        assertThat(stats.get("file").asText()).isEqualTo("<stdin>");
+        assertThat(stats.get("bytes").asInt()).isEqualTo(input.length());
+        assertThat(stats.get("degraded").asBoolean()).isFalse();
+        assertThat(stats.get("phaseMillis").has("compute_breaks")).isTrue();
+        assertThat(stats.get("levels").asInt()).isGreaterThan(0);
+        assertThat(stats.get("expensiveLevels").size()).isGreaterThan(0);
+    }
+
     @Test
     public void dryRunFiles() throws Exception {
         Path a = Files.createFile(testFolder.resolve("A.java"));
@@ -381,6 +407,27 @@ public class MainTest {
         assertThat(err.toString()).isEmpty();
     }
 
+    @Test
+    public void manyFilesAreWrittenInOrderOnce() throws Exception {
+        List<String> args = new ArrayList<>();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            Path file = testFolder.resolve("C" + i + ".java");
+            Files.write(file, ("class C" + i + "{}\n").getBytes(UTF_8));
+            args.add(file.toString());
+            expected.append("class C").append(i).append(" {}\n");
+        }
+        args.add(testFolder.resolve("C0.java").toString());
+
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in);
+
+        assertThat(main.format(args.toArray(new String[0]))).isEqualTo(0);
+        assertThat(out.toString()).isEqualTo(expected.toString());
+        assertThat(err.toString()).isEmpty();
+    }
+
     @Test
     public void keepGoingWhenFilesDontExist() throws Exception {
         Path a = Files.createFile(testFolder.resolve("A.java"));
@@ -518,6 +565,30 @@ public class MainTest {
         assertThat(out.toString()).isEqualTo(joiner.join(expected));
     }
 
+    @Test
+    public void workerServesMultipleRequests() throws Exception {
+        StringWriter requests = new StringWriter();
+        FormatterWorker.writeFrame(requests, "{\"args\":[\"-\"],\"input\":\"class A{}\\n\"}");
+        FormatterWorker.writeFrame(requests, "{\"args\":[\"-n\",\"-\"],\"input\":\"class B {}\\n\"}");
+
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        Main main = new Main(
+                new PrintWriter(out, true),
+                new PrintWriter(err, true),
+                new ByteArrayInputStream(requests.toString().getBytes(UTF_8)));
+        assertThat(main.format("--worker")).isEqualTo(0);
+        assertThat(err.toString()).isEmpty();
+
+        StringReader replies = new StringReader(out.toString());
+        assertThat(FormatterWorker.readFrame(replies)).hasValue("{\"protocol\":1}");
+        assertThat(FormatterWorker.readFrame(replies))
+                .hasValue("{\"exitCode\":0,\"stdout\":\"class A {}\\n\",\"stderr\":\"\"}");
+        assertThat(FormatterWorker.readFrame(replies))
+                .hasValue("{\"exitCode\":0,\"stdout\":\"\",\"stderr\":\"\"}");
+        assertThat(FormatterWorker.readFrame(replies)).isEmpty();
+    }
+
     private static ProcessBuilder formatterMain(String... args) {
         return new ProcessBuilder(ImmutableList.<String>builder()
                         .add(Paths.get(System.getProperty("java.home"))
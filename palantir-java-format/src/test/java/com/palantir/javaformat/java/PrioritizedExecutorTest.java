@@ -0,0 +1,58 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.javaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+@Execution(ExecutionMode.CONCURRENT)
+public class PrioritizedExecutorTest {
+
+    @Test
+    public void runsQueuedTasksHighestPriorityFirst() throws Exception {
+        PrioritizedExecutor executor = new PrioritizedExecutor(1);
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            executor.submit(() -> {
+                release.await();
+                return null;
+            });
+            List<String> order = new CopyOnWriteArrayList<>();
+            executor.submit(() -> order.add("small"), 10);
+            executor.submit(() -> order.add("large"), 1000);
+            executor.submit(() -> order.add("medium, first"), 100);
+            executor.submit(() -> order.add("medium, second"), 100);
+            Future<?> unprioritized = executor.submit(() -> order.add("unprioritized"));
+            release.countDown();
+
+            executor.submit(() -> null, 0).get();
+            assertThat(unprioritized.isDone()).isTrue();
+            assertThat(order)
+                    .containsExactly("unprioritized", "large", "medium, first", "medium, second", "small")
+                    .inOrder();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}